@@ -0,0 +1,123 @@
+package com.pahanaedu.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.model.Category;
+
+/**
+ * Every category, with its item count, held in memory as one immutable snapshot.
+ *
+ * Readers take the current snapshot and never see a half-built one. A change to categories, or to which category
+ * an item is in, marks the snapshot stale. CategoryDaoImpl then publishes a freshly loaded replacement, each with a
+ * higher version. A load that raced a change is still returned to its caller, but it stays stale, so the next
+ * read loads again.
+ */
+public class CategoryRegistry {
+
+    private static final CategoryRegistry instance = new CategoryRegistry();
+
+    public static final class Snapshot {
+        private final long version;
+        private final List<Category> categories;
+        private final Map<Long, Category> byId;
+        private final Map<Long, Integer> itemCounts;
+
+        private Snapshot(long version, List<Category> categories, Map<Long, Integer> itemCounts) {
+            this.version = version;
+            List<Category> copies = new ArrayList<>();
+            Map<Long, Category> byId = new LinkedHashMap<>();
+            for (Category category : categories) {
+                Category copy = new Category(category);
+                copies.add(copy);
+                byId.put(copy.getCategoryId(), copy);
+            }
+            this.categories = Collections.unmodifiableList(copies);
+            this.byId = Collections.unmodifiableMap(byId);
+            this.itemCounts = Collections.unmodifiableMap(new LinkedHashMap<>(itemCounts));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // Newest first, as the category screens list them; the entries are shared, so callers copy before changing one
+        public List<Category> getCategories() {
+            return categories;
+        }
+
+        public Category get(Long categoryId) {
+            return byId.get(categoryId);
+        }
+
+        public int getItemCount(Long categoryId) {
+            return itemCounts.getOrDefault(categoryId, 0);
+        }
+    }
+
+    private volatile Snapshot current;
+    private volatile boolean stale = true;
+    private long stamp;
+    private long version;
+
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private CategoryRegistry() {
+    }
+
+    public static CategoryRegistry getInstance() {
+        return instance;
+    }
+
+    // The live snapshot, or null when it has to be loaded again
+    public Snapshot current() {
+        return stale ? null : current;
+    }
+
+    // Taken before loading; publish compares it to spot a change that happened during the load
+    public synchronized long stamp() {
+        return stamp;
+    }
+
+    public synchronized Snapshot publish(List<Category> categories, Map<Long, Integer> itemCounts, long loadedAtStamp) {
+        Snapshot snapshot = new Snapshot(version + 1, categories, itemCounts);
+        // A transaction may have read its own uncommitted rows; it gets its answer but nobody else does
+        if (TransactionManager.isActive()) {
+            return snapshot;
+        }
+        version++;
+        rebuilds.increment();
+        current = snapshot;
+        stale = loadedAtStamp != stamp;
+        return snapshot;
+    }
+
+    // Marks the snapshot stale now and again when the surrounding transaction commits
+    public void invalidate() {
+        markStale();
+        TransactionManager.afterCommit(this::markStale);
+    }
+
+    private synchronized void markStale() {
+        stamp++;
+        stale = true;
+        invalidations.increment();
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Snapshot snapshot = current;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("version", version);
+        metrics.put("stale", stale);
+        metrics.put("categories", snapshot == null ? 0 : snapshot.getCategories().size());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("invalidations", invalidations.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,391 @@
+package com.pahanaedu.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.model.Customer;
+import com.pahanaedu.util.LatencyHistogram;
+
+/**
+ * Every customer held in memory for the checkout lookup: telephone numbers in a digit trie and name words in a
+ * sorted token map, so a partial number or the start of a name finds its customers without a query.
+ *
+ * A query of digits (spaces, dashes and a leading + are ignored) walks the trie to the node for that prefix and
+ * collects numbers below it, shortest first. Anything else is split into words, each of which has to start some word
+ * of the name; exact words and names starting with the query rank first.
+ *
+ * CustomerDaoImpl reports creates, edits and deletes; they are applied when the transaction commits. Changes made
+ * while the directory is being loaded are held back and replayed over the new load, as in ItemSearchIndex.
+ */
+public class CustomerDirectory {
+
+    private static final CustomerDirectory instance = new CustomerDirectory();
+
+    private record Entry(long id, String name, String telephone, String digits, String address, boolean active,
+            String normalized, String[] words) {
+
+        // lastUpdated is not kept, so it stays null rather than pretending to be now
+        Customer toCustomer() {
+            Customer customer = new Customer();
+            customer.setId(id);
+            customer.setName(name);
+            customer.setTelephone(telephone);
+            customer.setAddress(address);
+            customer.setIsActive(active);
+            return customer;
+        }
+    }
+
+    // One trie node per digit position; size counts the entries at and below it, so empty branches are skipped
+    private static final class Node {
+        private final Node[] next = new Node[10];
+        private Set<Long> ids;
+        private int size;
+    }
+
+    // One complete directory; a load fills a fresh one that then replaces the live one
+    public static final class Build {
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final Node telephones = new Node();
+        private final TreeMap<String, Set<Long>> words = new TreeMap<>();
+
+        public void add(Customer customer) {
+            remove(customer.getId());
+            String normalized = normalizeName(customer.getName());
+            Entry entry = new Entry(customer.getId(), customer.getName(), customer.getTelephone(),
+                    digitsOf(customer.getTelephone()), customer.getAddress(),
+                    Boolean.TRUE.equals(customer.getIsActive()), normalized,
+                    normalized.isEmpty() ? new String[0] : normalized.split(" "));
+            entries.put(entry.id(), entry);
+            if (!entry.digits().isEmpty()) {
+                Node node = telephones;
+                node.size++;
+                for (int i = 0; i < entry.digits().length(); i++) {
+                    int digit = entry.digits().charAt(i) - '0';
+                    if (node.next[digit] == null) {
+                        node.next[digit] = new Node();
+                    }
+                    node = node.next[digit];
+                    node.size++;
+                }
+                if (node.ids == null) {
+                    node.ids = new TreeSet<>();
+                }
+                node.ids.add(entry.id());
+            }
+            for (String word : entry.words()) {
+                words.computeIfAbsent(word, k -> new HashSet<>()).add(entry.id());
+            }
+        }
+
+        private void remove(long id) {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return;
+            }
+            if (!entry.digits().isEmpty()) {
+                Node node = telephones;
+                node.size--;
+                for (int i = 0; i < entry.digits().length() && node != null; i++) {
+                    int digit = entry.digits().charAt(i) - '0';
+                    Node child = node.next[digit];
+                    if (child != null && --child.size == 0) {
+                        // nothing left below: drop the whole branch
+                        node.next[digit] = null;
+                        child = null;
+                    }
+                    node = child;
+                }
+                if (node != null && node.ids != null) {
+                    node.ids.remove(id);
+                }
+            }
+            for (String word : entry.words()) {
+                Set<Long> ids = words.get(word);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+        }
+    }
+
+    private record Change(long id, Customer customer) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Build live = new Build();
+    private boolean loaded;
+    private boolean loading;
+    private final List<Change> pending = new ArrayList<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LatencyHistogram lookupLatency = new LatencyHistogram();
+
+    private CustomerDirectory() {
+    }
+
+    public static CustomerDirectory getInstance() {
+        return instance;
+    }
+
+    // --- changes, applied when the surrounding transaction commits ---
+
+    public void customerSaved(Customer customer) {
+        // copied now, so later changes to the caller's object cannot leak in
+        Customer saved = new Customer(customer.getName(), customer.getTelephone(), customer.getAddress());
+        saved.setId(customer.getId());
+        saved.setIsActive(customer.getIsActive());
+        TransactionManager.afterCommit(() -> apply(new Change(saved.getId(), saved)));
+    }
+
+    public void customerRemoved(long id) {
+        TransactionManager.afterCommit(() -> apply(new Change(id, null)));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (loading) {
+                pending.add(change);
+            }
+            applyTo(live, change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void applyTo(Build build, Change change) {
+        if (change.customer() != null) {
+            build.add(change.customer());
+        } else {
+            build.remove(change.id());
+        }
+    }
+
+    // --- loading ---
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Starts holding back changes; the caller adds every customer and hands the build to finishLoad or abandonLoad
+    public Build beginLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = true;
+            pending.clear();
+            return new Build();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishLoad(Build build) {
+        lock.writeLock().lock();
+        try {
+            for (Change change : pending) {
+                applyTo(build, change);
+            }
+            live = build;
+            loaded = true;
+        } finally {
+            loading = false;
+            pending.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void abandonLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = false;
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- lookups ---
+
+    // Customers whose telephone starts with the query's digits, or whose name words start with its words
+    public List<Customer> suggest(String query, int limit) {
+        long startedAt = System.nanoTime();
+        lookups.increment();
+        lock.readLock().lock();
+        try {
+            if (query == null || query.isBlank() || limit <= 0) {
+                return List.of();
+            }
+            List<Entry> matches = isTelephone(query)
+                    ? byTelephone(digitsOf(query), limit)
+                    : byName(normalizeName(query), limit);
+            List<Customer> customers = new ArrayList<>(matches.size());
+            for (Entry entry : matches) {
+                customers.add(entry.toCustomer());
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+            lookupLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    private List<Entry> byTelephone(String digits, int limit) {
+        Node node = live.telephones;
+        for (int i = 0; i < digits.length() && node != null; i++) {
+            node = node.next[digits.charAt(i) - '0'];
+        }
+        List<Entry> matches = new ArrayList<>();
+        if (node == null || digits.isEmpty()) {
+            return matches;
+        }
+        // breadth first, so the typed number itself and the shortest completions come first
+        List<Node> level = List.of(node);
+        while (!level.isEmpty() && matches.size() < limit) {
+            List<Node> below = new ArrayList<>();
+            for (Node current : level) {
+                if (current.ids != null) {
+                    for (Long id : current.ids) {
+                        if (matches.size() == limit) {
+                            return matches;
+                        }
+                        matches.add(live.entries.get(id));
+                    }
+                }
+                for (Node child : current.next) {
+                    if (child != null && child.size > 0) {
+                        below.add(child);
+                    }
+                }
+            }
+            level = below;
+        }
+        return matches;
+    }
+
+    private List<Entry> byName(String normalized, int limit) {
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String[] terms = normalized.split(" ");
+        Set<Long> candidates = null;
+        for (String term : terms) {
+            Set<Long> ids = new HashSet<>();
+            // every word that starts with the term sorts between the term and the term followed by the highest char
+            NavigableMap<String, Set<Long>> starting = live.words.subMap(term, true, term + Character.MAX_VALUE, false);
+            for (Set<Long> wordIds : starting.values()) {
+                ids.addAll(wordIds);
+            }
+            if (candidates == null) {
+                candidates = ids;
+            } else {
+                candidates.retainAll(ids);
+            }
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Scored> scored = new ArrayList<>(candidates.size());
+        for (Long id : candidates) {
+            Entry entry = live.entries.get(id);
+            scored.add(new Scored(entry, score(entry, terms, normalized)));
+        }
+        scored.sort((a, b) -> {
+            if (a.score() != b.score()) {
+                return Integer.compare(b.score(), a.score());
+            }
+            int byName = a.entry().normalized().compareTo(b.entry().normalized());
+            return byName != 0 ? byName : Long.compare(a.entry().id(), b.entry().id());
+        });
+        List<Entry> matches = new ArrayList<>(Math.min(limit, scored.size()));
+        for (int i = 0; i < scored.size() && i < limit; i++) {
+            matches.add(scored.get(i).entry());
+        }
+        return matches;
+    }
+
+    private record Scored(Entry entry, int score) {
+    }
+
+    // 2 per term that is a whole word of the name, 1 per term that only starts one; +2 when the name starts with the query
+    private static int score(Entry entry, String[] terms, String normalizedQuery) {
+        int score = 0;
+        for (String term : terms) {
+            int best = 1;
+            for (String word : entry.words()) {
+                if (word.equals(term)) {
+                    best = 2;
+                    break;
+                }
+            }
+            score += best;
+        }
+        return entry.normalized().startsWith(normalizedQuery) ? score + 2 : score;
+    }
+
+    // A query is a telephone number when it has digits and nothing else but separators
+    private static boolean isTelephone(String query) {
+        boolean digit = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c != ' ' && c != '-' && c != '+' && c != '(' && c != ')') {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    private static String digitsOf(String telephone) {
+        if (telephone == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(telephone.length());
+        for (int i = 0; i < telephone.length(); i++) {
+            char c = telephone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    // Lower case, with anything but letters and digits turned into single spaces
+    private static String normalizeName(String name) {
+        return name == null ? "" : name.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            metrics.put("loaded", loaded);
+            metrics.put("customers", live.entries.size());
+            metrics.put("telephones", live.telephones.size);
+            metrics.put("nameWords", live.words.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("lookups", lookups.sum());
+        metrics.put("lookupLatency", lookupLatency.toMap());
+        return metrics;
+    }
+}
@@ -0,0 +1,279 @@
+package com.pahanaedu.cache;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.model.Item;
+
+/**
+ * The dashboard's figures, kept current as sales, stock changes and customer changes commit instead of being
+ * aggregated from the tables on every request.
+ *
+ * Every figure is a counter, and sales are kept per day, so a dashboard read is a handful of atomic reads whatever
+ * the size of the tables. Money is counted in cents. An event whose effect cannot be worked out exactly marks the
+ * counters dirty, and DashboardStatsService reconciles them against SQL soon after; it also reconciles on a timer,
+ * which corrects drift from writes made outside this webapp and from the "compared to a month ago" baselines ageing.
+ *
+ * The month-ago stock is the stock on items last updated before the cutoff of the last reconcile. Any write to an
+ * item moves its last_updated_at to now, so every item event carries the item as it was read before the write; when
+ * that read was from before the cutoff, the item's old stock leaves the baseline.
+ */
+public class DashboardCounters {
+
+    private static final DashboardCounters instance = new DashboardCounters();
+
+    private final AtomicLong activeCustomers = new AtomicLong();
+    // Active customers not touched in the last month; the customer change is measured against it
+    private final AtomicLong customersBefore = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong stockUnits = new AtomicLong();
+    // Stock on items not touched in the last month; the stock change is measured against it
+    private final AtomicLong stockBefore = new AtomicLong();
+    private volatile LocalDateTime stockBeforeCutoff = LocalDateTime.MIN;
+    private final AtomicLong stockValueCents = new AtomicLong();
+    private final AtomicLong categories = new AtomicLong();
+    private final ConcurrentHashMap<LocalDate, AtomicLong> salesCentsByDay = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+    private volatile long reconciledAt;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder reconciles = new LongAdder();
+    // Reconciles that an event landed during, and that asked for another one
+    private final LongAdder racedEvents = new LongAdder();
+    private volatile Map<String, Object> lastDrift = Map.of();
+
+    private DashboardCounters() {
+    }
+
+    public static DashboardCounters getInstance() {
+        return instance;
+    }
+
+    // --- events; each is applied when the surrounding transaction commits, or now when there is none ---
+
+    // soldItems are the items as read before their stock was taken
+    public void saleCommitted(LocalDate saleDate, double totalAmount, long unitsSold, double stockValueSold,
+            Collection<Item> soldItems) {
+        List<Touch> touched = new ArrayList<>(soldItems.size());
+        for (Item item : soldItems) {
+            touched.add(Touch.of(item));
+        }
+        afterCommit(() -> {
+            salesCentsByDay.computeIfAbsent(saleDate, d -> new AtomicLong()).addAndGet(cents(totalAmount));
+            stockUnits.addAndGet(-unitsSold);
+            stockValueCents.addAndGet(-cents(stockValueSold));
+            for (Touch touch : touched) {
+                leaveStockBefore(touch);
+            }
+        });
+    }
+
+    // before is the item as read before the write
+    public void stockChanged(long units, double value, Item before) {
+        Touch touch = Touch.of(before);
+        afterCommit(() -> {
+            stockUnits.addAndGet(units);
+            stockValueCents.addAndGet(cents(value));
+            leaveStockBefore(touch);
+        });
+    }
+
+    // A write that changed the item but not its stock, which still restarts its last_updated_at
+    public void itemTouched(Item before) {
+        stockChanged(0, 0, before);
+    }
+
+    public void itemAdded(long stock, double stockValue) {
+        afterCommit(() -> {
+            items.incrementAndGet();
+            stockUnits.addAndGet(stock);
+            stockValueCents.addAndGet(cents(stockValue));
+        });
+    }
+
+    public void itemRemoved(long stock, double stockValue, Item before) {
+        Touch touch = Touch.of(before);
+        afterCommit(() -> {
+            items.decrementAndGet();
+            stockUnits.addAndGet(-stock);
+            stockValueCents.addAndGet(-cents(stockValue));
+            leaveStockBefore(touch);
+        });
+    }
+
+    // An item's last_updated_at and stock as read before a write; taken when the event is raised
+    private record Touch(LocalDateTime lastUpdatedAt, long stock) {
+
+        static Touch of(Item item) {
+            return new Touch(item.getLastUpdatedAt(),
+                    item.getStockAvailable() != null ? item.getStockAvailable() : 0);
+        }
+    }
+
+    // The item was written just now, so its old stock no longer counts as a month old
+    private void leaveStockBefore(Touch touch) {
+        if (touch.lastUpdatedAt() == null) {
+            dirty.set(true);
+        } else if (touch.lastUpdatedAt().isBefore(stockBeforeCutoff)) {
+            stockBefore.addAndGet(-touch.stock());
+        }
+    }
+
+    // New customers are active, and were touched this month
+    public void customerAdded() {
+        afterCommit(activeCustomers::incrementAndGet);
+    }
+
+    public void customerActiveChanged(boolean active) {
+        afterCommit(() -> activeCustomers.addAndGet(active ? 1 : -1));
+    }
+
+    public void customerRemoved(boolean wasActive) {
+        if (wasActive) {
+            afterCommit(activeCustomers::decrementAndGet);
+        }
+    }
+
+    public void categoriesChanged(int delta) {
+        afterCommit(() -> categories.addAndGet(delta));
+    }
+
+    // For a change whose effect on the figures is not known here; the next reconcile picks it up
+    public void markDirty() {
+        TransactionManager.afterCommit(() -> dirty.set(true));
+    }
+
+    private void afterCommit(Runnable event) {
+        TransactionManager.afterCommit(() -> {
+            event.run();
+            events.increment();
+        });
+    }
+
+    // --- reconciliation ---
+
+    // Events applied so far; a reconcile reads it before its queries and hands it to reconcile
+    public long eventCount() {
+        return events.sum();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean needsReconcile(long intervalMillis) {
+        return !loaded || dirty.get() || System.currentTimeMillis() - reconciledAt >= intervalMillis;
+    }
+
+    // Called as a reconcile starts, so that a change landing while it reads the tables asks for another one
+    public void clearDirty() {
+        dirty.set(false);
+    }
+
+    /**
+     * Replaces every counter with the values just read from the database.
+     *
+     * salesByDay holds the days from a month before today onwards; other days are dropped, and stockBefore was summed
+     * over items last updated before stockBeforeCutoff(today). eventsBefore is eventCount() from before that read:
+     * an event applied since then may be overwritten here, so the counters are marked dirty for another reconcile.
+     */
+    public void reconcile(Map<String, Number> totals, Map<LocalDate, Double> salesByDay, LocalDate today,
+            long eventsBefore) {
+        Map<String, Object> drift = new LinkedHashMap<>();
+        drift.put("customers", set(activeCustomers, totals.get("activeCustomers").longValue()));
+        set(customersBefore, totals.get("customersBefore").longValue());
+        drift.put("items", set(items, totals.get("items").longValue()));
+        drift.put("stockUnits", set(stockUnits, totals.get("stockUnits").longValue()));
+        set(stockBefore, totals.get("stockBefore").longValue());
+        stockBeforeCutoff = stockBeforeCutoff(today);
+        drift.put("stockValue", set(stockValueCents, cents(totals.get("stockValue").doubleValue())) / 100.0);
+        drift.put("categories", set(categories, totals.get("categories").longValue()));
+
+        long todayBefore = salesCents(today);
+        salesCentsByDay.keySet().removeIf(day -> !salesByDay.containsKey(day));
+        for (Map.Entry<LocalDate, Double> day : salesByDay.entrySet()) {
+            salesCentsByDay.computeIfAbsent(day.getKey(), d -> new AtomicLong()).set(cents(day.getValue()));
+        }
+        drift.put("todaysSales", (todayBefore - salesCents(today)) / 100.0);
+
+        if (events.sum() != eventsBefore) {
+            dirty.set(true);
+            racedEvents.increment();
+        }
+
+        lastDrift = drift;
+        reconciledAt = System.currentTimeMillis();
+        reconciles.increment();
+        loaded = true;
+    }
+
+    // Items last updated before this make up the month-ago stock
+    public static LocalDateTime stockBeforeCutoff(LocalDate today) {
+        return today.minusMonths(1).atStartOfDay();
+    }
+
+    // Sets the counter and returns how far it had drifted from the new value
+    private static long set(AtomicLong counter, long value) {
+        return counter.getAndSet(value) - value;
+    }
+
+    // --- reads ---
+
+    public Map<String, Object> getDashboardStats(LocalDate today) {
+        long customers = activeCustomers.get();
+        long stock = stockUnits.get();
+        long todaysSales = salesCents(today);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalCustomers", customers);
+        stats.put("customerChange", customers - customersBefore.get());
+        stats.put("itemsInStock", stock);
+        stats.put("stockChange", stock - stockBefore.get());
+        stats.put("todaysSales", todaysSales / 100.0);
+        stats.put("salesChange", (todaysSales - salesCents(today.minusMonths(1))) / 100.0);
+        return stats;
+    }
+
+    public Map<String, Object> getItemStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalItems", items.get());
+        stats.put("inStock", stockUnits.get());
+        stats.put("totalCategories", categories.get());
+        stats.put("avgPriceTotal", stockValueCents.get() / 100.0);
+        return stats;
+    }
+
+    private long salesCents(LocalDate day) {
+        AtomicLong total = salesCentsByDay.get(day);
+        return total == null ? 0 : total.get();
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("loaded", loaded);
+        metrics.put("dirty", dirty.get());
+        metrics.put("reconciledAt", reconciledAt);
+        metrics.put("reconciles", reconciles.sum());
+        metrics.put("events", events.sum());
+        metrics.put("racedEvents", racedEvents.sum());
+        metrics.put("dayBuckets", salesCentsByDay.size());
+        metrics.put("lastDrift", lastDrift);
+        return metrics;
+    }
+}
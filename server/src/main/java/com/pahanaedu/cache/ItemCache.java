@@ -0,0 +1,132 @@
+package com.pahanaedu.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.model.Item;
+
+/**
+ * Item rows by item_id, in front of ItemDaoImpl, so till lookups and cart pricing do not go to MySQL each time.
+ *
+ * The cache is a bounded LRU. ItemDaoImpl drops an entry as soon as it writes the row, and again after the
+ * transaction commits. Loads carry the invalidation stamp they started with and are discarded if an invalidation
+ * happened meanwhile, so a read racing a write cannot put the old row back. Rows read inside a transaction are never
+ * stored, since they may include that transaction's uncommitted changes.
+ * Callers always get their own copy of an item.
+ */
+public class ItemCache {
+
+    private static final ItemCache instance = new ItemCache(Integer.getInteger("pahanaedu.cache.items.maxSize", 5_000));
+
+    private final int maxEntries;
+    private final LinkedHashMap<Long, Item> entries;
+    private long stamp;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    private ItemCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // Access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Long, Item>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Item> eldest) {
+                if (size() > ItemCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ItemCache getInstance() {
+        return instance;
+    }
+
+    // A copy of the cached item, or null on a miss
+    public synchronized Item get(Long itemId) {
+        Item item = entries.get(itemId);
+        if (item == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Item(item);
+    }
+
+    // Taken before reading the database; pass it to put so the row is dropped if it went stale meanwhile
+    public synchronized long stamp() {
+        return stamp;
+    }
+
+    public synchronized void put(Item item, long loadedAtStamp) {
+        if (item == null || loadedAtStamp != stamp || TransactionManager.isActive()) {
+            return;
+        }
+        entries.put(item.getItemId(), new Item(item));
+    }
+
+    public void putAll(Collection<Item> items, long loadedAtStamp) {
+        for (Item item : items) {
+            put(item, loadedAtStamp);
+        }
+    }
+
+    // Drops the item now and once more when the surrounding transaction commits (or at once when there is none)
+    public void invalidate(Long itemId) {
+        remove(itemId);
+        TransactionManager.afterCommit(() -> remove(itemId));
+    }
+
+    public void invalidate(Collection<Long> itemIds) {
+        for (Long itemId : itemIds) {
+            invalidate(itemId);
+        }
+    }
+
+    private synchronized void remove(Long itemId) {
+        stamp++;
+        invalidations.increment();
+        entries.remove(itemId);
+    }
+
+    // Full-reload mode: replaces the contents with the whole catalog, if it fits and nothing changed while it was read
+    public synchronized boolean reloadAll(Collection<Item> items, long loadedAtStamp) {
+        if (items.size() > maxEntries || loadedAtStamp != stamp || TransactionManager.isActive()) {
+            return false;
+        }
+        stamp++;
+        entries.clear();
+        for (Item item : items) {
+            entries.put(item.getItemId(), new Item(item));
+        }
+        reloads.increment();
+        return true;
+    }
+
+    public synchronized void clear() {
+        stamp++;
+        entries.clear();
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", entries.size());
+        metrics.put("maxSize", maxEntries);
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("invalidations", invalidations.sum());
+        metrics.put("reloads", reloads.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,336 @@
+package com.pahanaedu.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.util.LatencyHistogram;
+
+/**
+ * Item names indexed in memory for typeahead: every word prefix (up to 12 characters) and every trigram inside a
+ * word maps to the ids of the items that have it.
+ *
+ * A query word shorter than three characters matches word prefixes only; a longer one is looked up by its
+ * trigrams and then checked against the names, so it also matches inside a word. Every query word has to match.
+ * Matches rank by how well each word matched (whole word, start of a word, inside a word), with a bonus when the
+ * name starts with the query, then by shorter name.
+ *
+ * ItemDaoImpl reports creates, renames and deletes; they are applied when the transaction commits. While the index
+ * is being built from the table, those changes are also held back and replayed over the new build, which is safe
+ * because each one just sets an item's final name or removes it.
+ */
+public class ItemSearchIndex {
+
+    private static final ItemSearchIndex instance = new ItemSearchIndex();
+
+    private static final int MAX_PREFIX = 12;
+    private static final int GRAM = 3;
+
+    private record Entry(long id, String name, String normalized, String[] words) {
+    }
+
+    // One complete index; a build fills a fresh one that then replaces the live one
+    public static final class Build {
+        private final Map<Long, Entry> entries = new HashMap<>();
+        private final Map<String, Set<Long>> prefixes = new HashMap<>();
+        private final Map<String, Set<Long>> trigrams = new HashMap<>();
+
+        public void add(long id, String name) {
+            remove(id);
+            String normalized = normalize(name);
+            String[] words = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+            entries.put(id, new Entry(id, name, normalized, words));
+            for (String word : words) {
+                for (String key : prefixesOf(word)) {
+                    prefixes.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+                }
+                for (String key : trigramsOf(word)) {
+                    trigrams.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+                }
+            }
+        }
+
+        private void remove(long id) {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return;
+            }
+            for (String word : entry.words()) {
+                for (String key : prefixesOf(word)) {
+                    unlink(prefixes, key, id);
+                }
+                for (String key : trigramsOf(word)) {
+                    unlink(trigrams, key, id);
+                }
+            }
+        }
+
+        private static void unlink(Map<String, Set<Long>> postings, String key, long id) {
+            Set<Long> ids = postings.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private record Change(long id, String name) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Build live = new Build();
+    private boolean built;
+    private boolean building;
+    private final List<Change> pending = new ArrayList<>();
+
+    private final LongAdder searches = new LongAdder();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+
+    private ItemSearchIndex() {
+    }
+
+    public static ItemSearchIndex getInstance() {
+        return instance;
+    }
+
+    // --- changes, applied when the surrounding transaction commits ---
+
+    public void itemSaved(long id, String name) {
+        TransactionManager.afterCommit(() -> apply(new Change(id, name)));
+    }
+
+    public void itemRemoved(long id) {
+        TransactionManager.afterCommit(() -> apply(new Change(id, null)));
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                pending.add(change);
+            }
+            applyTo(live, change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void applyTo(Build build, Change change) {
+        if (change.name() != null) {
+            build.add(change.id(), change.name());
+        } else {
+            build.remove(change.id());
+        }
+    }
+
+    // --- building ---
+
+    public boolean isBuilt() {
+        lock.readLock().lock();
+        try {
+            return built;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Starts holding back changes; the caller adds every item to the build and hands it to finishBuild or abandonBuild
+    public Build beginBuild() {
+        lock.writeLock().lock();
+        try {
+            building = true;
+            pending.clear();
+            return new Build();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishBuild(Build build) {
+        lock.writeLock().lock();
+        try {
+            for (Change change : pending) {
+                applyTo(build, change);
+            }
+            live = build;
+            built = true;
+        } finally {
+            building = false;
+            pending.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void abandonBuild() {
+        lock.writeLock().lock();
+        try {
+            building = false;
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- searching ---
+
+    // Ids of the best matches for the query, best first; empty for a query with no letters or digits
+    public List<Long> search(String query, int limit) {
+        long startedAt = System.nanoTime();
+        searches.increment();
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String[] terms = normalized.split(" ");
+
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = null;
+            for (String term : terms) {
+                Set<Long> matches = candidatesFor(live, term);
+                if (candidates == null) {
+                    candidates = new HashSet<>(matches);
+                } else {
+                    candidates.retainAll(matches);
+                }
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<long[]> scored = new ArrayList<>(); // id, score
+            for (Long id : candidates) {
+                Entry entry = live.entries.get(id);
+                int score = score(entry, terms, normalized);
+                if (score > 0) {
+                    scored.add(new long[] { id, score });
+                }
+            }
+            scored.sort((a, b) -> {
+                if (a[1] != b[1]) {
+                    return Long.compare(b[1], a[1]);
+                }
+                Entry ea = live.entries.get(a[0]);
+                Entry eb = live.entries.get(b[0]);
+                if (ea.name().length() != eb.name().length()) {
+                    return Integer.compare(ea.name().length(), eb.name().length());
+                }
+                int byName = ea.normalized().compareTo(eb.normalized());
+                return byName != 0 ? byName : Long.compare(a[0], b[0]);
+            });
+
+            List<Long> ids = new ArrayList<>(Math.min(limit, scored.size()));
+            for (int i = 0; i < scored.size() && i < limit; i++) {
+                ids.add(scored.get(i)[0]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+            searchLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    // Items that may contain the term: by word prefix when it is short, else by all of its trigrams
+    private static Set<Long> candidatesFor(Build build, String term) {
+        if (term.length() < GRAM) {
+            return build.prefixes.getOrDefault(term, Set.of());
+        }
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : trigramsOf(term)) {
+            Set<Long> ids = build.trigrams.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            postings.add(ids);
+        }
+        // intersect starting from the smallest posting list so the working set never exceeds it
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Long> result = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    // 3 per term matching a whole word, 2 per term starting a word, 1 per term inside a word, 0 if a term is missing
+    private static int score(Entry entry, String[] terms, String normalizedQuery) {
+        int score = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (String word : entry.words()) {
+                if (word.equals(term)) {
+                    best = 3;
+                    break;
+                } else if (word.startsWith(term)) {
+                    best = Math.max(best, 2);
+                } else if (best == 0 && word.contains(term)) {
+                    best = 1;
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        return entry.normalized().startsWith(normalizedQuery) ? score + 2 : score;
+    }
+
+    // Lower case, with anything but letters and digits turned into single spaces
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int end = normalized.length();
+        return end > 0 && normalized.charAt(end - 1) == ' ' ? normalized.substring(0, end - 1) : normalized.toString();
+    }
+
+    private static List<String> prefixesOf(String word) {
+        List<String> keys = new ArrayList<>();
+        for (int length = 1; length <= Math.min(word.length(), MAX_PREFIX); length++) {
+            keys.add(word.substring(0, length));
+        }
+        return keys;
+    }
+
+    private static Set<String> trigramsOf(String word) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            grams.add(word.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            metrics.put("built", built);
+            metrics.put("items", live.entries.size());
+            metrics.put("prefixes", live.prefixes.size());
+            metrics.put("trigrams", live.trigrams.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("searches", searches.sum());
+        metrics.put("searchLatency", searchLatency.toMap());
+        return metrics;
+    }
+}
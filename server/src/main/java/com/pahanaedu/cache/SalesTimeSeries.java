@@ -0,0 +1,343 @@
+package com.pahanaedu.cache;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.dto.TimeSeries;
+
+/**
+ * Sales per hour for the last few hundred days, in primitive arrays used as a ring: the slot for an hour is its
+ * number since the epoch modulo the capacity, and each slot remembers which hour it holds, so a slot left over
+ * from an earlier lap reads as empty. Daily and monthly series are summed from the hours when asked for.
+ *
+ * Committed sales are added as they happen. The history comes from a seed that AnalyticsService loads from the
+ * sales table in one read-only transaction; sales committed while a seed is loading are held back, looked up in
+ * that same snapshot, and replayed on top of it only when the snapshot does not hold them. Ids alone cannot tell,
+ * since a sale can take its id before the snapshot and commit after it. Until the first seed is in, sales are not
+ * recorded at all, since the seed will read them.
+ *
+ * Hours are wall-clock hours as sales.sale_date and sale_time store them, so there are no DST gaps. Live sales
+ * are bucketed from those same columns, read back from the inserted row, never from the JVM clock.
+ */
+public class SalesTimeSeries {
+
+    private static final SalesTimeSeries instance = new SalesTimeSeries();
+
+    public static final int DEFAULT_DAYS = 400;
+    // An hourly series longer than this is refused; summing by day or month is the answer there
+    public static final int MAX_HOURLY_DAYS = 31;
+
+    public enum Granularity {
+        HOUR, DAY, MONTH
+    }
+
+    // One ring's worth of arrays; a seed fills a fresh one that then replaces the live one whole
+    public static final class Seed {
+        private final long[] hourOf;
+        private final long[] revenueCents;
+        private final int[] saleCount;
+        private final int[] units;
+        // pending sales already looked up in the seed's snapshot, and those of them the snapshot holds
+        private final Set<Long> checked = new HashSet<>();
+        private final Set<Long> contained = new HashSet<>();
+
+        private Seed(int capacity) {
+            hourOf = new long[capacity];
+            Arrays.fill(hourOf, -1);
+            revenueCents = new long[capacity];
+            saleCount = new int[capacity];
+            units = new int[capacity];
+        }
+
+        // Records which of the looked-up sales the seed's snapshot already holds
+        public void checked(Collection<Long> saleIds, Collection<Long> inSnapshot) {
+            checked.addAll(saleIds);
+            contained.addAll(inSnapshot);
+        }
+
+        public void addSales(LocalDate date, int hour, double revenue, int count) {
+            int slot = claim(this, hourNumber(date, hour));
+            if (slot >= 0) {
+                revenueCents[slot] += cents(revenue);
+                saleCount[slot] += count;
+            }
+        }
+
+        public void addUnits(LocalDate date, int hour, int qty) {
+            int slot = claim(this, hourNumber(date, hour));
+            if (slot >= 0) {
+                units[slot] += qty;
+            }
+        }
+    }
+
+    private record PendingSale(long saleId, long hour, long cents, int units) {
+    }
+
+    private final int capacity = Integer.getInteger("pahanaedu.timeseries.days", DEFAULT_DAYS) * 24;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Seed ring = new Seed(capacity);
+    private boolean seeded;
+    private boolean seeding;
+    private final List<PendingSale> pending = new ArrayList<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long seededAt;
+
+    private SalesTimeSeries() {
+    }
+
+    public static SalesTimeSeries getInstance() {
+        return instance;
+    }
+
+    public int getDays() {
+        return capacity / 24;
+    }
+
+    // --- feeding ---
+
+    // Added when the surrounding transaction commits, in the hour of the sale row's own sale_date and sale_time
+    public void saleCommitted(long saleId, LocalDate saleDate, LocalTime saleTime, double totalAmount, int unitsSold) {
+        PendingSale sale = new PendingSale(saleId, hourNumber(saleDate, saleTime.getHour()), cents(totalAmount), unitsSold);
+        TransactionManager.afterCommit(() -> record(sale));
+    }
+
+    private void record(PendingSale sale) {
+        lock.writeLock().lock();
+        try {
+            if (seeding) {
+                pending.add(sale);
+            }
+            if (seeded) {
+                apply(ring, sale);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Seed target, PendingSale sale) {
+        int slot = claim(target, sale.hour());
+        if (slot < 0) {
+            dropped.increment();
+            return;
+        }
+        target.revenueCents[slot] += sale.cents();
+        target.saleCount[slot]++;
+        target.units[slot] += sale.units();
+        recorded.increment();
+    }
+
+    // The slot for an hour, emptied first if it still holds an older one; -1 if the hour is older than the slot's
+    private static int claim(Seed target, long hour) {
+        int slot = (int) Math.floorMod(hour, (long) target.hourOf.length);
+        if (target.hourOf[slot] == hour) {
+            return slot;
+        }
+        if (target.hourOf[slot] > hour) {
+            return -1;
+        }
+        target.hourOf[slot] = hour;
+        target.revenueCents[slot] = 0;
+        target.saleCount[slot] = 0;
+        target.units[slot] = 0;
+        return slot;
+    }
+
+    // --- seeding ---
+
+    public boolean isSeeded() {
+        lock.readLock().lock();
+        try {
+            return seeded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The first day a seed needs to load
+    public LocalDate seedFrom() {
+        return LocalDate.now().minusDays(getDays() - 1);
+    }
+
+    // Starts holding back committed sales; the caller fills the seed and hands it to finishSeed or abandonSeed
+    public Seed beginSeed() {
+        lock.writeLock().lock();
+        try {
+            seeding = true;
+            pending.clear();
+            return new Seed(capacity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sales held back during the seed that have not yet been looked up in its snapshot
+    public List<Long> uncheckedSales(Seed seed) {
+        lock.readLock().lock();
+        try {
+            List<Long> saleIds = new ArrayList<>();
+            for (PendingSale sale : pending) {
+                if (!seed.checked.contains(sale.saleId())) {
+                    saleIds.add(sale.saleId());
+                }
+            }
+            return saleIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replays the held-back sales the snapshot does not hold and makes the seed live. Returns false, changing
+     * nothing, when a sale arrived since the last uncheckedSales; the caller looks it up and tries again.
+     */
+    public boolean finishSeed(Seed seed) {
+        lock.writeLock().lock();
+        try {
+            for (PendingSale sale : pending) {
+                if (!seed.checked.contains(sale.saleId())) {
+                    return false;
+                }
+            }
+            for (PendingSale sale : pending) {
+                if (!seed.contained.contains(sale.saleId())) {
+                    apply(seed, sale);
+                }
+            }
+            ring = seed;
+            seeded = true;
+            seeding = false;
+            pending.clear();
+            seededAt = System.currentTimeMillis();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void abandonSeed() {
+        lock.writeLock().lock();
+        try {
+            seeding = false;
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- reading ---
+
+    /**
+     * Totals per bucket from the start of from to the end of to, every bucket present and zero-filled, oldest
+     * first. Monthly buckets are calendar months, limited to the days inside the range.
+     */
+    public TimeSeries query(LocalDate from, LocalDate to, Granularity granularity) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.isBefore(LocalDate.now().minusDays(getDays() - 1))) {
+            throw new IllegalArgumentException("Only the last " + getDays() + " days are held");
+        }
+        // the range is walked day by day under the read lock, so it may span no more than the ring holds
+        if (to.toEpochDay() - from.toEpochDay() >= getDays()) {
+            throw new IllegalArgumentException("A series may span at most " + getDays() + " days");
+        }
+        if (granularity == Granularity.HOUR && to.toEpochDay() - from.toEpochDay() >= MAX_HOURLY_DAYS) {
+            throw new IllegalArgumentException("Hourly series are limited to " + MAX_HOURLY_DAYS + " days");
+        }
+
+        List<String> labels = new ArrayList<>();
+        List<long[]> ranges = new ArrayList<>(); // first and last+1 hour of each bucket
+        switch (granularity) {
+        case HOUR:
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                for (int hour = 0; hour < 24; hour++) {
+                    labels.add(date.atTime(hour, 0).toString());
+                    long h = hourNumber(date, hour);
+                    ranges.add(new long[] { h, h + 1 });
+                }
+            }
+            break;
+        case DAY:
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                labels.add(date.toString());
+                ranges.add(new long[] { hourNumber(date, 0), hourNumber(date.plusDays(1), 0) });
+            }
+            break;
+        case MONTH:
+            for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+                LocalDate first = month.atDay(1).isBefore(from) ? from : month.atDay(1);
+                LocalDate last = month.atEndOfMonth().isAfter(to) ? to : month.atEndOfMonth();
+                labels.add(month.toString());
+                ranges.add(new long[] { hourNumber(first, 0), hourNumber(last.plusDays(1), 0) });
+            }
+            break;
+        }
+
+        int buckets = labels.size();
+        double[] revenue = new double[buckets];
+        int[] saleCount = new int[buckets];
+        int[] units = new int[buckets];
+        lock.readLock().lock();
+        try {
+            Seed current = ring;
+            for (int b = 0; b < buckets; b++) {
+                long cents = 0;
+                for (long h = ranges.get(b)[0]; h < ranges.get(b)[1]; h++) {
+                    int slot = (int) Math.floorMod(h, (long) capacity);
+                    if (current.hourOf[slot] == h) {
+                        cents += current.revenueCents[slot];
+                        saleCount[b] += current.saleCount[slot];
+                        units[b] += current.units[slot];
+                    }
+                }
+                revenue[b] = cents / 100.0;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        TimeSeries series = new TimeSeries();
+        series.setGranularity(granularity.name().toLowerCase());
+        series.setFrom(from);
+        series.setTo(to);
+        series.setBuckets(labels);
+        series.setRevenue(revenue);
+        series.setSaleCount(saleCount);
+        series.setUnits(units);
+        return series;
+    }
+
+    private static long hourNumber(LocalDate date, int hour) {
+        return date.toEpochDay() * 24 + hour;
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("days", getDays());
+        metrics.put("seeded", isSeeded());
+        metrics.put("seededAt", seededAt);
+        metrics.put("recorded", recorded.sum());
+        metrics.put("dropped", dropped.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,72 @@
+package com.pahanaedu.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pahanaedu.dao.TransactionManager;
+
+/**
+ * A change counter per table, bumped by the DAOs on every write, for validators that must not touch the database.
+ *
+ * Versions start from this process's start time, so a restart never reuses an old value. Writes made outside this
+ * webapp (another instance, a manual SQL fix) are not seen; the conditional GET layer built on this treats a
+ * restart as the reset point.
+ */
+public class TableVersions {
+
+    private static final TableVersions instance = new TableVersions();
+
+    private static final class Version {
+        long counter;
+        long changedAt;
+    }
+
+    private final long epoch = System.currentTimeMillis();
+    private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<>();
+
+    private TableVersions() {
+    }
+
+    public static TableVersions getInstance() {
+        return instance;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    // Bumped now, so readers inside the writing transaction move on, and again after commit for everyone else.
+    // Only the second bump moves lastModified: a read between the two still sees the old rows.
+    public void changed(String table) {
+        bump(table, false);
+        TransactionManager.afterCommit(() -> bump(table, true));
+    }
+
+    private void bump(String table, boolean committed) {
+        Version version = versionOf(table);
+        synchronized (version) {
+            version.counter++;
+            if (committed) {
+                version.changedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    public long version(String table) {
+        Version version = versionOf(table);
+        synchronized (version) {
+            return version.counter;
+        }
+    }
+
+    // When a change to the table last committed, or the process start when it has not changed since
+    public long lastModified(String table) {
+        Version version = versionOf(table);
+        synchronized (version) {
+            return version.changedAt == 0 ? epoch : version.changedAt;
+        }
+    }
+
+    private Version versionOf(String table) {
+        return versions.computeIfAbsent(table, t -> new Version());
+    }
+}
@@ -0,0 +1,165 @@
+package com.pahanaedu.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pahanaedu.cache.ExpiringCache;
+
+/**
+ * Row totals for paginated listings, kept apart from the page queries so a page fetch never counts the whole set.
+ *
+ * Unfiltered totals are counted once, then moved by the DAOs as rows are inserted and deleted,
+ * and recounted every few minutes to correct any drift. Filtered totals are counted on first use and cached briefly,
+ * or estimated from EXPLAIN when the caller does not need an exact figure.
+ */
+public class CountCache {
+    private static final Logger logger = Logger.getLogger(CountCache.class.getName());
+
+    private static final CountCache instance = new CountCache();
+
+    private static final long TOTAL_REFRESH_MS = 5 * 60_000;
+    private static final long FILTERED_TTL_MS = 30_000;
+
+    private static final class Total {
+        final AtomicLong count = new AtomicLong();
+        volatile long loadedAt;
+    }
+
+    private final ConcurrentHashMap<String, Total> totals = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ExpiringCache<String, Long>> filtered = new ConcurrentHashMap<>();
+
+    private final LongAdder totalReloads = new LongAdder();
+    private final LongAdder filteredCounts = new LongAdder();
+    private final LongAdder estimates = new LongAdder();
+
+    private CountCache() {
+    }
+
+    public static CountCache getInstance() {
+        return instance;
+    }
+
+    // Total rows in the table; table names come from DAO constants, never from requests
+    public long total(String table) throws Exception {
+        Total total = totals.computeIfAbsent(table, t -> new Total());
+        if (System.currentTimeMillis() - total.loadedAt > TOTAL_REFRESH_MS) {
+            synchronized (total) {
+                if (System.currentTimeMillis() - total.loadedAt > TOTAL_REFRESH_MS) {
+                    totalReloads.increment();
+                    long counted = CrudUtil.queryOne("SELECT COUNT(*) FROM " + table, rs -> rs.getLong(1));
+                    total.count.set(counted);
+                    total.loadedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return total.count.get();
+    }
+
+    // Rows matching the filter (a WHERE clause without the keyword), exact or estimated
+    public RowCount count(String table, String filter, boolean exact, Object... args) throws Exception {
+        if (filter == null || filter.isEmpty()) {
+            return new RowCount(total(table), true);
+        }
+        if (!exact) {
+            Long estimate = estimate(table, filter, args);
+            if (estimate != null) {
+                return new RowCount(estimate, false);
+            }
+        }
+
+        String key = filter + "|" + Arrays.toString(args);
+        Long cached = filteredFor(table).get(key, () -> {
+            filteredCounts.increment();
+            return CrudUtil.queryOne("SELECT COUNT(*) FROM " + table + " WHERE " + filter, rs -> rs.getLong(1), args);
+        });
+        return new RowCount(cached, true);
+    }
+
+    /**
+     * The optimizer's row estimate for the filter; cheap but approximate. It is read from the plan row for the table
+     * itself, not the first row: a subquery's const lookup (customers by unique telephone) can be planned first.
+     * rows is what the access path reads, and filtered the share of those the rest of the WHERE keeps, so the
+     * estimate is rows * filtered / 100. When no plan row names the table, the caller counts exactly instead.
+     */
+    private Long estimate(String table, String filter, Object... args) {
+        try {
+            estimates.increment();
+            long[] estimate = { -1 };
+            CrudUtil.queryForEach("EXPLAIN SELECT 1 FROM " + table + " WHERE " + filter, rs -> {
+                if (estimate[0] < 0 && table.equalsIgnoreCase(rs.getString("table"))) {
+                    double filtered = hasColumn(rs, "filtered") ? rs.getDouble("filtered") : 100;
+                    estimate[0] = Math.round(rs.getLong("rows") * filtered / 100);
+                }
+            }, args);
+            return estimate[0] >= 0 ? estimate[0] : null;
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Row estimate failed for " + table + ", counting instead", e);
+            return null;
+        }
+    }
+
+    // MariaDB's plain EXPLAIN has no filtered column (only EXPLAIN EXTENDED does); MySQL's always has
+    private static boolean hasColumn(ResultSet rs, String column) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (column.equalsIgnoreCase(meta.getColumnLabel(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void rowsInserted(String table, int rows) {
+        changed(table, rows);
+    }
+
+    public void rowsDeleted(String table, int rows) {
+        changed(table, -rows);
+    }
+
+    // Rows changed in a way that may move them in or out of a filter
+    public void rowsUpdated(String table) {
+        changed(table, 0);
+    }
+
+    // Filtered counts go at once and again after commit, so a read in between cannot cache a stale figure
+    private void changed(String table, int delta) {
+        filteredFor(table).invalidateAll();
+        TransactionManager.afterCommit(() -> {
+            if (delta != 0) {
+                Total total = totals.get(table);
+                if (total != null) {
+                    total.count.addAndGet(delta);
+                }
+            }
+            filteredFor(table).invalidateAll();
+        });
+    }
+
+    private ExpiringCache<String, Long> filteredFor(String table) {
+        return filtered.computeIfAbsent(table, t -> new ExpiringCache<>(FILTERED_TTL_MS, 1_000));
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<String, Object> tableTotals = new LinkedHashMap<>();
+        totals.forEach((table, total) -> tableTotals.put(table, total.count.get()));
+        metrics.put("totals", tableTotals);
+        metrics.put("totalReloads", totalReloads.sum());
+        metrics.put("filteredCounts", filteredCounts.sum());
+        metrics.put("estimates", estimates.sum());
+        Map<String, Object> caches = new LinkedHashMap<>();
+        filtered.forEach((table, cache) -> caches.put(table, cache.getMetrics()));
+        metrics.put("filteredCache", caches);
+        return metrics;
+    }
+}
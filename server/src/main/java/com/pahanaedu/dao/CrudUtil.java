@@ -3,55 +3,167 @@ package com.pahanaedu.dao;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.pahanaedu.util.DBConnection;
 
 public class CrudUtil {
 
-    private static PreparedStatement getPreparedStatement(String sql, Object... args) throws Exception{
-        Connection connection = DBConnection.getInstance().getConnection();
+    // Inside TransactionManager.inTransaction() this is the thread's transaction connection, whose close() is a no-op
+    private static Connection getConnection() throws SQLException {
+        Connection connection = TransactionManager.currentConnection();
+        return connection != null ? connection : DBConnection.getInstance().getConnection();
+    }
+
+    // Same SQL text on the same connection reuses the cached, already-parsed statement
+    private static PreparedStatement getPreparedStatement(Connection connection, String sql, Object... args) throws SQLException {
         PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            bind(statement, args);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+        return statement;
+    }
+
+    private static void bind(PreparedStatement statement, Object... args) throws SQLException {
         if(args != null){
             for (int i = 0; i < args.length; i++) {
                 statement.setObject(i+1, args[i]);
             }
         }
-        return statement;
     }
-    
+
     public static boolean executeUpdate(String sql, Object... args) throws Exception{
-        return getPreparedStatement(sql, args).executeUpdate() > 0;
+        try (Connection connection = getConnection();
+             PreparedStatement statement = getPreparedStatement(connection, sql, args)) {
+            return statement.executeUpdate() > 0;
+        }
     }
-    
-    
-    public static ResultSet executeQuery(String sql, Object... args) throws Exception{
-        return getPreparedStatement(sql, args).executeQuery();
+
+    // One statement, many parameter sets, sent together; returns the update count for each set in order
+    public static int[] executeBatch(String sql, List<Object[]> batchArgs) throws Exception {
+        if (batchArgs.isEmpty()) {
+            return new int[0];
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            // cleared however this ends, even when a bind fails halfway: a cached statement keeps queued sets,
+            // and the next borrower running this SQL on the connection would execute them too
+            try {
+                for (Object[] args : batchArgs) {
+                    bind(statement, args);
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            } finally {
+                statement.clearBatch();
+            }
+        }
     }
-    
-    public static long executeInsert(String sql, Object... args) throws Exception {
-        Connection connection = DBConnection.getInstance().getConnection();
-        PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
 
-        if(args != null){
-            for (int i = 0; i < args.length; i++) {
-                statement.setObject(i + 1, args[i]);
+    // All rows, mapped and fully read before the connection goes back to the pool
+    public static <T> List<T> query(String sql, RowMapper<T> mapper, Object... args) throws Exception {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = getPreparedStatement(connection, sql, args);
+             ResultSet rs = statement.executeQuery()) {
+            List<T> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(mapper.mapRow(rs));
             }
+            return rows;
+        }
+    }
+
+    // First row only, or null when the query matches nothing
+    public static <T> T queryOne(String sql, RowMapper<T> mapper, Object... args) throws Exception {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = getPreparedStatement(connection, sql, args);
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? mapper.mapRow(rs) : null;
         }
+    }
 
-        int affectedRows = statement.executeUpdate();
+    public static void queryForEach(String sql, RowHandler handler, Object... args) throws Exception {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = getPreparedStatement(connection, sql, args);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                handler.processRow(rs);
+            }
+        }
+    }
 
-        if (affectedRows == 0) {
-            throw new Exception("Insert failed, no rows affected.");
+    // Lazily mapped rows; the stream holds a pooled connection until it is closed, so use try-with-resources
+    public static <T> Stream<T> queryStream(String sql, RowMapper<T> mapper, Object... args) throws Exception {
+        Connection connection = getConnection();
+        PreparedStatement statement = null;
+        ResultSet rs;
+        try {
+            statement = getPreparedStatement(connection, sql, args);
+            rs = statement.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) statement.close();
+            connection.close();
+            throw e;
         }
 
-        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-            if (generatedKeys.next()) {
-                return generatedKeys.getLong(1); // return generated id
-            } else {
-                throw new Exception("Insert failed, no ID obtained.");
+        PreparedStatement openStatement = statement;
+        Runnable release = () -> {
+            try {
+                rs.close();
+                openStatement.close();
+                connection.close();
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to release query resources", e);
+            }
+        };
+
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.mapRow(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Failed to read row", e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(release);
+    }
+
+    public static long executeInsert(String sql, Object... args) throws Exception {
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+
+            bind(statement, args);
+
+            int affectedRows = statement.executeUpdate();
+
+            if (affectedRows == 0) {
+                throw new Exception("Insert failed, no rows affected.");
+            }
+
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    return generatedKeys.getLong(1); // return generated id
+                } else {
+                    throw new Exception("Insert failed, no ID obtained.");
+                }
             }
         }
     }
 
-    
 }
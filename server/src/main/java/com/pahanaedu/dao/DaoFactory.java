@@ -32,12 +32,14 @@ public class DaoFactory {
             return new StaffDaoImpl(); 
         case ANALYTICS:
             return new AnalyticsDaoImpl(); 
+        case SALES_ROLLUP:
+            return new SalesRollupDaoImpl();
             default:
                 return null;
         }
     }
 
     public enum DaoTypes {
-    	 CATEGORY,CUSTOMER, ITEM,SALE,SALEITEM, STAFF, ANALYTICS;
+    	 CATEGORY,CUSTOMER, ITEM,SALE,SALEITEM, STAFF, ANALYTICS, SALES_ROLLUP;
     }
 }
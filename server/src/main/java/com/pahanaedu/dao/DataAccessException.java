@@ -0,0 +1,10 @@
+package com.pahanaedu.dao;
+
+// Unchecked wrapper for SQL failures surfacing where checked exceptions cannot, such as inside a Stream
+public class DataAccessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,84 @@
+package com.pahanaedu.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a keyset-paginated listing: the sort key values of the last row returned plus its id as a tie-breaker.
+ * Clients get it as an opaque token and send it back as ?after= to fetch the next page.
+ */
+public final class PageCursor {
+    private static final String SEPARATOR = "|";
+
+    private final String[] keys;
+    private final long id;
+
+    private PageCursor(String[] keys, long id) {
+        this.keys = keys;
+        this.id = id;
+    }
+
+    public static String encode(long id, Object... keys) {
+        StringBuilder raw = new StringBuilder();
+        for (Object key : keys) {
+            raw.append(key).append(SEPARATOR);
+        }
+        raw.append(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // An empty token means "start from the top"; anything unreadable is rejected as a bad request
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            String[] keys = new String[parts.length - 1];
+            System.arraycopy(parts, 0, keys, 0, keys.length);
+            return new PageCursor(keys, Long.parseLong(parts[parts.length - 1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public LocalDateTime getDateTime(int index) {
+        try {
+            return LocalDateTime.parse(key(index));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public LocalDate getDate(int index) {
+        try {
+            return LocalDate.parse(key(index));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public LocalTime getTime(int index) {
+        try {
+            return LocalTime.parse(key(index));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private String key(int index) {
+        if (index >= keys.length) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return keys[index];
+    }
+}
@@ -0,0 +1,20 @@
+package com.pahanaedu.dao;
+
+// A row total and whether it was counted or taken from the optimizer's estimate
+public final class RowCount {
+    private final long count;
+    private final boolean exact;
+
+    public RowCount(long count, boolean exact) {
+        this.count = count;
+        this.exact = exact;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+}
@@ -0,0 +1,10 @@
+package com.pahanaedu.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Callback for queries that fold many rows into one result (e.g. grouping sale lines under their sale)
+@FunctionalInterface
+public interface RowHandler {
+    void processRow(ResultSet rs) throws SQLException;
+}
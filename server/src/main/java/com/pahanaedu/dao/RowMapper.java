@@ -0,0 +1,10 @@
+package com.pahanaedu.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Maps the current row of a ResultSet; CrudUtil owns cursor movement and closing
+@FunctionalInterface
+public interface RowMapper<T> {
+    T mapRow(ResultSet rs) throws SQLException;
+}
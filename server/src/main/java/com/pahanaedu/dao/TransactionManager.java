@@ -0,0 +1,202 @@
+package com.pahanaedu.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pahanaedu.util.DBConnection;
+
+/**
+ * Binds one pooled connection to the current thread for the length of a unit of work.
+ * Every CrudUtil call made inside inTransaction() runs on that connection, so the whole unit commits or rolls back together.
+ */
+public final class TransactionManager {
+    private static final Logger logger = Logger.getLogger(TransactionManager.class.getName());
+
+    private static final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+    private TransactionManager() {
+    }
+
+    public static <T> T inTransaction(Callable<T> work) throws Exception {
+        return execute(work, false);
+    }
+
+    // Read-only transactions let InnoDB skip row locks and transaction id assignment for consistent multi-query reads
+    public static <T> T inReadOnlyTransaction(Callable<T> work) throws Exception {
+        return execute(work, true);
+    }
+
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    // Runs the action once the surrounding transaction commits, or straight away when there is none
+    public static void afterCommit(Runnable action) {
+        Transaction tx = current.get();
+        if (tx == null) {
+            runSafely(action);
+        } else {
+            tx.afterCommit.add(action);
+        }
+    }
+
+    // Runs the action when the surrounding transaction ends, whether it commits or rolls back
+    public static void afterCompletion(Runnable action) {
+        Transaction tx = current.get();
+        if (tx == null) {
+            runSafely(action);
+        } else {
+            tx.afterCompletion.add(action);
+        }
+    }
+
+    // The connection CrudUtil should use, or null when no transaction is bound to this thread
+    static Connection currentConnection() {
+        Transaction tx = current.get();
+        return tx == null ? null : tx.shared;
+    }
+
+    private static <T> T execute(Callable<T> work, boolean readOnly) throws Exception {
+        Transaction tx = current.get();
+        if (tx != null) {
+            if (tx.readOnly && !readOnly) {
+                throw new IllegalStateException("Cannot start a read-write transaction inside a read-only one");
+            }
+            return executeNested(tx, work);
+        }
+
+        Connection connection = DBConnection.getInstance().getConnection();
+        tx = new Transaction(connection, readOnly);
+        try {
+            if (readOnly) {
+                connection.setReadOnly(true);
+            }
+            connection.setAutoCommit(false);
+            current.set(tx);
+
+            T result = work.call();
+            connection.commit();
+            current.remove();
+
+            for (Runnable action : tx.afterCommit) {
+                runSafely(action);
+            }
+            return result;
+        } catch (Exception e) {
+            rollback(connection, e);
+            throw e;
+        } finally {
+            current.remove();
+            // The pool restores autocommit and read-only before the connection is reused
+            try {
+                connection.close();
+            } finally {
+                for (Runnable action : tx.afterCompletion) {
+                    runSafely(action);
+                }
+            }
+        }
+    }
+
+    // A nested unit of work shares the outer connection; a savepoint lets it fail without undoing the caller's work
+    private static <T> T executeNested(Transaction tx, Callable<T> work) throws Exception {
+        if (tx.readOnly) {
+            return work.call();
+        }
+
+        int hooks = tx.afterCommit.size();
+        Savepoint savepoint = tx.connection.setSavepoint();
+        try {
+            T result = work.call();
+            tx.connection.releaseSavepoint(savepoint);
+            return result;
+        } catch (Exception e) {
+            try {
+                tx.connection.rollback(savepoint);
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+            // Hooks registered by the rolled-back part must not fire
+            tx.afterCommit.subList(hooks, tx.afterCommit.size()).clear();
+            throw e;
+        }
+    }
+
+    private static void rollback(Connection connection, Exception cause) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    private static void runSafely(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Transaction callback failed", e);
+        }
+    }
+
+    private static class Transaction {
+        private final Connection connection;
+        private final Connection shared;
+        private final boolean readOnly;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private final List<Runnable> afterCompletion = new ArrayList<>();
+
+        Transaction(Connection connection, boolean readOnly) {
+            this.connection = connection;
+            this.readOnly = readOnly;
+            this.shared = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new SharedConnection(connection)
+            );
+        }
+    }
+
+    // What DAOs see inside a transaction: closing it is a no-op and transaction control stays with the manager
+    private static class SharedConnection implements InvocationHandler {
+        private final Connection connection;
+
+        SharedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                return null;
+            case "commit":
+            case "rollback":
+            case "setAutoCommit":
+                throw new SQLException("Transaction is managed by TransactionManager");
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,10 +1,22 @@
 package com.pahanaedu.dao.custom;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
+import com.pahanaedu.cache.SalesTimeSeries;
 import com.pahanaedu.dao.CrudDao; 
+import com.pahanaedu.util.IdTotals;
 
 public interface AnalyticsDao extends CrudDao<Object, Object>  {
-    Map<String, Object> getDashboardStats() throws Exception;
-    Map<String, Object> getItemAnalytics() throws Exception;
+    Map<String, Number> getCustomerTotals() throws Exception;
+    Map<String, Number> getStockTotals(LocalDateTime stockBeforeCutoff) throws Exception;
+    long getCategoryCount() throws Exception;
+    Map<LocalDate, Double> getSalesByDay(LocalDate from) throws Exception;
+    long[] getSaleIdRange(LocalDate from, LocalDate to) throws Exception;
+    IdTotals sumSaleLinesByItem(long fromSaleId, long toSaleId, LocalDate from, LocalDate to) throws Exception;
+    void loadHourlySales(LocalDate from, SalesTimeSeries.Seed seed) throws Exception;
+    List<Long> getExistingSaleIds(Collection<Long> saleIds) throws Exception;
 }
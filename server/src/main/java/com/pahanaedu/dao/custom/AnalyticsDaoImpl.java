@@ -1,104 +1,146 @@
 package com.pahanaedu.dao.custom;
 
-import java.sql.ResultSet;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.pahanaedu.cache.SalesTimeSeries;
 import com.pahanaedu.dao.CrudUtil;
 import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.util.IdTotals;
 
 public class AnalyticsDaoImpl implements AnalyticsDao {
 
+    // The dashboard counters' totals, one table per query so that a reconcile can run them side by side
+
     @Override
-    public Map<String, Object> getDashboardStats() throws Exception {
-        Map<String, Object> stats = new HashMap<>();
+    public Map<String, Number> getCustomerTotals() throws Exception {
+        Map<String, Number> totals = new HashMap<>();
 
         String sql = """
             SELECT 
-                -- Customers
-                COALESCE(c.total_customers, 0) AS total_customers,
-                COALESCE(c.total_customers - c.last_month_customers, 0) AS customer_change,
-
-                -- Items
-                COALESCE(i.items_in_stock, 0) AS items_in_stock,
-                COALESCE(i.items_in_stock - i.last_month_stock, 0) AS stock_change,
-
-                -- Sales
-                COALESCE(s.todays_sales, 0) AS todays_sales,
-                COALESCE(s.todays_sales - s.last_month_sales, 0) AS sales_change
-            FROM 
-                (
-                    SELECT COUNT(*) AS total_customers,
-                        (SELECT COUNT(*) 
-                         FROM customers 
-                         WHERE isActive = 1
-                           AND lastUpdated < DATE_SUB(CURDATE(), INTERVAL 1 MONTH)
-                        ) AS last_month_customers
-                    FROM customers 
-                    WHERE isActive = 1
-                ) c
-            CROSS JOIN 
-                (
-                    SELECT SUM(stock_available) AS items_in_stock,
-                        (SELECT SUM(stock_available) 
-                         FROM item
-                         WHERE last_updated_at < DATE_SUB(CURDATE(), INTERVAL 1 MONTH)
-                        ) AS last_month_stock
-                    FROM item
-                ) i
-            CROSS JOIN 
-                (
-                    SELECT SUM(total_amount) AS todays_sales,
-                        (SELECT SUM(total_amount) 
-                         FROM sales
-                         WHERE sale_date = DATE_SUB(CURDATE(), INTERVAL 1 MONTH)
-                        ) AS last_month_sales
-                    FROM sales
-                    WHERE sale_date = CURDATE()
-                ) s;
+                COUNT(*) AS active_customers,
+                COALESCE(SUM(lastUpdated < DATE_SUB(CURDATE(), INTERVAL 1 MONTH)), 0) AS customers_before
+            FROM customers
+            WHERE isActive = 1;
             """;
 
-        ResultSet rs = CrudUtil.executeQuery(sql);
+        CrudUtil.queryForEach(sql, rs -> {
+            totals.put("activeCustomers", rs.getLong("active_customers"));
+            totals.put("customersBefore", rs.getLong("customers_before"));
+        });
 
-        if (rs.next()) {
-            stats.put("totalCustomers", rs.getInt("total_customers"));
-            stats.put("customerChange", rs.getInt("customer_change"));
+        return totals;
+    }
 
-            stats.put("itemsInStock", rs.getInt("items_in_stock"));
-            stats.put("stockChange", rs.getInt("stock_change"));
+    // stock_before is the stock on items last updated before the cutoff, the same one DashboardCounters applies
+    @Override
+    public Map<String, Number> getStockTotals(LocalDateTime stockBeforeCutoff) throws Exception {
+        Map<String, Number> totals = new HashMap<>();
 
-            stats.put("todaysSales", rs.getDouble("todays_sales"));
-            stats.put("salesChange", rs.getDouble("sales_change"));
-        }
+        String sql = """
+            SELECT 
+                COUNT(*) AS total_items,
+                COALESCE(SUM(stock_available), 0) AS stock_units,
+                COALESCE(SUM(stock_available * unit_price), 0) AS stock_value,
+                COALESCE(SUM(CASE WHEN last_updated_at < ?
+                                  THEN stock_available ELSE 0 END), 0) AS stock_before
+            FROM item;
+            """;
 
-        return stats;
+        CrudUtil.queryForEach(sql, rs -> {
+            totals.put("items", rs.getLong("total_items"));
+            totals.put("stockUnits", rs.getLong("stock_units"));
+            totals.put("stockValue", rs.getDouble("stock_value"));
+            totals.put("stockBefore", rs.getLong("stock_before"));
+        }, stockBeforeCutoff);
+
+        return totals;
     }
 
-    
     @Override
-    public Map<String, Object> getItemAnalytics() throws Exception {
-        Map<String, Object> stats = new HashMap<>();
-
-    String sql = """
-        SELECT 
-            COALESCE(COUNT(i.item_id), 0) AS total_items,
-            COALESCE(SUM(i.stock_available), 0) AS in_stock,
-            COALESCE((SELECT COUNT(*) FROM category), 0) AS total_categories,
-            COALESCE(SUM(i.stock_available * i.unit_price), 0) AS avg_price_total
-        FROM item i;
-        """;
-
-    ResultSet rs = CrudUtil.executeQuery(sql);
-
-    if (rs.next()) {
-        stats.put("totalItems", rs.getInt("total_items"));
-        stats.put("inStock", rs.getInt("in_stock"));
-        stats.put("totalCategories", rs.getInt("total_categories"));
-        stats.put("avgPriceTotal", rs.getDouble("avg_price_total"));
+    public long getCategoryCount() throws Exception {
+        return CrudUtil.queryOne("SELECT COUNT(*) FROM category", rs -> rs.getLong(1));
     }
 
-    return stats;
-}
+    // Sales per day from the given date onwards; days without a sale are absent
+    @Override
+    public Map<LocalDate, Double> getSalesByDay(LocalDate from) throws Exception {
+        Map<LocalDate, Double> salesByDay = new LinkedHashMap<>();
+        CrudUtil.queryForEach(
+            "SELECT sale_date, SUM(total_amount) AS total FROM sales WHERE sale_date >= ? GROUP BY sale_date",
+            rs -> salesByDay.put(rs.getDate("sale_date").toLocalDate(), rs.getDouble("total")),
+            Date.valueOf(from)
+        );
+        return salesByDay;
+    }
+
+    // The lowest and highest sale id dated inside the range, or null when it has no sales
+    @Override
+    public long[] getSaleIdRange(LocalDate from, LocalDate to) throws Exception {
+        return CrudUtil.queryOne(
+            "SELECT MIN(sale_id), MAX(sale_id) FROM sales WHERE sale_date BETWEEN ? AND ?",
+            rs -> rs.getObject(1) == null ? null : new long[] { rs.getLong(1), rs.getLong(2) },
+            Date.valueOf(from), Date.valueOf(to)
+        );
+    }
+
+    // Units and revenue per item for the sales with ids in [fromSaleId, toSaleId] dated inside the range. The sale
+    // id bounds keep each call to one stretch of the sale_items index, so callers can run many side by side.
+    @Override
+    public IdTotals sumSaleLinesByItem(long fromSaleId, long toSaleId, LocalDate from, LocalDate to) throws Exception {
+        IdTotals totals = new IdTotals();
+        CrudUtil.queryForEach(
+            "SELECT si.item_id, SUM(si.qty) AS units, SUM(si.item_total) AS revenue " +
+            "FROM sale_items si JOIN sales s ON s.sale_id = si.sale_id " +
+            "WHERE si.sale_id BETWEEN ? AND ? AND s.sale_date BETWEEN ? AND ? " +
+            "GROUP BY si.item_id",
+            rs -> totals.add(rs.getLong("item_id"), rs.getLong("units"), rs.getDouble("revenue")),
+            fromSaleId, toSaleId, Date.valueOf(from), Date.valueOf(to)
+        );
+        return totals;
+    }
+
+    // Fills a time-series seed with sales per hour from the given date onwards. Revenue and units are summed in
+    // separate queries so that neither has to join every sale line of the whole history at once; the caller runs
+    // both in one read-only transaction to see a single snapshot.
+    @Override
+    public void loadHourlySales(LocalDate from, SalesTimeSeries.Seed seed) throws Exception {
+        CrudUtil.queryForEach(
+            "SELECT sale_date, HOUR(sale_time) AS sale_hour, SUM(total_amount) AS revenue, COUNT(*) AS sale_count " +
+            "FROM sales WHERE sale_date >= ? GROUP BY sale_date, HOUR(sale_time)",
+            rs -> seed.addSales(rs.getDate("sale_date").toLocalDate(), rs.getInt("sale_hour"),
+                    rs.getDouble("revenue"), rs.getInt("sale_count")),
+            Date.valueOf(from)
+        );
+        CrudUtil.queryForEach(
+            "SELECT s.sale_date, HOUR(s.sale_time) AS sale_hour, SUM(si.qty) AS units " +
+            "FROM sales s JOIN sale_items si ON si.sale_id = s.sale_id " +
+            "WHERE s.sale_date >= ? GROUP BY s.sale_date, HOUR(s.sale_time)",
+            rs -> seed.addUnits(rs.getDate("sale_date").toLocalDate(), rs.getInt("sale_hour"), rs.getInt("units")),
+            Date.valueOf(from)
+        );
+    }
+
+    // Which of the sales exist as this transaction sees them
+    @Override
+    public List<Long> getExistingSaleIds(Collection<Long> saleIds) throws Exception {
+        if (saleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return CrudUtil.query(
+            "SELECT sale_id FROM sales WHERE sale_id IN (" + String.join(",", Collections.nCopies(saleIds.size(), "?")) + ")",
+            rs -> rs.getLong(1),
+            saleIds.toArray()
+        );
+    }
     
     
     
@@ -4,124 +4,183 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import com.pahanaedu.cache.CategoryRegistry;
+import com.pahanaedu.cache.DashboardCounters;
+import com.pahanaedu.cache.TableVersions;
 import com.pahanaedu.dao.CrudUtil;
+import com.pahanaedu.dao.TransactionManager;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Category;
 
+// Reads are answered from the CategoryRegistry snapshot; writes go to the database and then rebuild it
 public class CategoryDaoImpl implements CategoryDao {
+    private static final Logger logger = Logger.getLogger(CategoryDaoImpl.class.getName());
+
+    private static final String TABLE = "category";
+
+    // One loader at a time, so a burst of reads after a change costs a single query
+    private static final Object LOAD_LOCK = new Object();
 
     @Override
     public boolean create(Category t) throws Exception {
-        return CrudUtil.executeUpdate(
+        boolean created = CrudUtil.executeUpdate(
             "INSERT INTO category (name) VALUES (?)",
             t.getName()
         );
+        categoriesChanged();
+        if (created) {
+            DashboardCounters.getInstance().categoriesChanged(1);
+        }
+        return created;
     }
 
     @Override
     public boolean update(Category t) throws Exception {
-        return CrudUtil.executeUpdate(
+        boolean updated = CrudUtil.executeUpdate(
             "UPDATE category SET name = ? WHERE category_id = ?",
             t.getName(), t.getCategoryId()
         );
+        categoriesChanged();
+        return updated;
     }
 
     @Override
     public boolean delete(Long id) throws Exception {
-        return CrudUtil.executeUpdate("DELETE FROM category WHERE category_id = ?", id);
+        boolean deleted = CrudUtil.executeUpdate("DELETE FROM category WHERE category_id = ?", id);
+        categoriesChanged();
+        if (deleted) {
+            DashboardCounters.getInstance().categoriesChanged(-1);
+        }
+        return deleted;
     }
 
     @Override
     public Category get(Long id) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery("SELECT * FROM category WHERE category_id = ?", id);
-        if (rs.next()) {
-            return mapResultSetToCategory(rs);
-        }
-        return null;
+        Category category = snapshot().get(id);
+        return category != null ? new Category(category) : null;
     }
 
     @Override
     public List<Category> getAllCategories() throws Exception {
-        List<Category> categories = new ArrayList<>(); 
-
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * FROM category ORDER BY last_updated_at DESC"
-        );
-        while (rs.next()) {
-            categories.add(mapResultSetToCategory(rs));
-        }
-        return categories;
+        return copies(snapshot().getCategories());
     }
 
     @Override
     public List<Category> searchByName(String keyword) throws Exception {
-        List<Category> categories = new ArrayList<>();
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * FROM category WHERE LOWER(name) LIKE ? ORDER BY last_updated_at DESC",
-            "%" + keyword.toLowerCase() + "%"
-        );
-        while (rs.next()) {
-            categories.add(mapResultSetToCategory(rs));
+        String needle = keyword.toLowerCase();
+        List<Category> matches = new ArrayList<>();
+        for (Category category : snapshot().getCategories()) {
+            if (category.getName().toLowerCase().contains(needle)) {
+                matches.add(category);
+            }
         }
-        return categories;
+        return copies(matches);
     }
 
     @Override
     public boolean deleteByName(String name) throws Exception {
-        return CrudUtil.executeUpdate("DELETE FROM category WHERE name = ?", name);
+        boolean deleted = CrudUtil.executeUpdate("DELETE FROM category WHERE name = ?", name);
+        categoriesChanged();
+        if (deleted) {
+            DashboardCounters.getInstance().categoriesChanged(-1);
+        }
+        return deleted;
     }
 
     @Override
     public boolean existsByName(String name) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery("SELECT COUNT(*) FROM category WHERE name = ?", name);
-        if (rs.next()) {
-            return rs.getInt(1) > 0;
-        }
-        return false;
+        return CrudUtil.queryOne("SELECT COUNT(*) FROM category WHERE name = ?", rs -> rs.getInt(1) > 0, name);
     }
 
     @Override
     public boolean existsByNameExcludingId(String name, Long excludeId) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery(
+        return CrudUtil.queryOne(
             "SELECT COUNT(*) FROM category WHERE name = ? AND category_id <> ?",
+            rs -> rs.getInt(1) > 0,
             name, excludeId
         );
-        if (rs.next()) {
-            return rs.getInt(1) > 0;
-        }
-        return false;
     }
 
 
     @Override
     public List<Category> getRecentlyUpdated(int limit) throws Exception {
-        List<Category> categories = new ArrayList<>();
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * FROM category ORDER BY last_updated_at DESC LIMIT ?",
-            limit
-        );
-        while (rs.next()) {
-            categories.add(mapResultSetToCategory(rs));
-        }
-        return categories;
+        List<Category> categories = snapshot().getCategories();
+        return copies(categories.subList(0, Math.max(0, Math.min(limit, categories.size()))));
     }
 
+    // Categories without items never qualify, as with the inner join this replaces
     @Override
     public List<Category> getCategoriesWithMinItems(int minItems) throws Exception {
-        List<Category> categories = new ArrayList<>();
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT c.* FROM category c " +
-            "JOIN item i ON c.category_id = i.category_id " +
-            "GROUP BY c.category_id " +
-            "HAVING COUNT(i.item_id) >= ?",
-            minItems
-        );
-        while (rs.next()) {
-            categories.add(mapResultSetToCategory(rs));
+        CategoryRegistry.Snapshot snapshot = snapshot();
+        List<Category> matches = new ArrayList<>();
+        for (Category category : snapshot.getCategories()) {
+            int itemCount = snapshot.getItemCount(category.getCategoryId());
+            if (itemCount > 0 && itemCount >= minItems) {
+                matches.add(category);
+            }
+        }
+        return copies(matches);
+    }
+
+    public long getVersion() throws Exception {
+        return snapshot().getVersion();
+    }
+
+    // The current snapshot, loading categories and their item counts in one query when it is stale
+    private CategoryRegistry.Snapshot snapshot() throws Exception {
+        CategoryRegistry registry = CategoryRegistry.getInstance();
+        CategoryRegistry.Snapshot snapshot = registry.current();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (LOAD_LOCK) {
+            snapshot = registry.current();
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long stamp = registry.stamp();
+            List<Category> categories = new ArrayList<>();
+            Map<Long, Integer> itemCounts = new HashMap<>();
+            CrudUtil.queryForEach(
+                "SELECT c.*, COUNT(i.item_id) AS item_count FROM category c " +
+                "LEFT JOIN item i ON c.category_id = i.category_id " +
+                "GROUP BY c.category_id " +
+                "ORDER BY c.last_updated_at DESC, c.category_id DESC",
+                rs -> {
+                    Category category = mapResultSetToCategory(rs);
+                    categories.add(category);
+                    itemCounts.put(category.getCategoryId(), rs.getInt("item_count"));
+                }
+            );
+            return registry.publish(categories, itemCounts, stamp);
+        }
+    }
+
+    // Stale at once, and rebuilt as soon as the change is committed so the next till read finds it ready
+    private void categoriesChanged() {
+        CategoryRegistry.getInstance().invalidate();
+        TableVersions.getInstance().changed(TABLE);
+        TransactionManager.afterCommit(() -> {
+            try {
+                snapshot();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Category snapshot rebuild failed; the next read will retry", e);
+            }
+        });
+    }
+
+    private List<Category> copies(List<Category> categories) {
+        List<Category> copies = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            copies.add(new Category(category));
         }
-        return categories;
+        return copies;
     }
 
     private Category mapResultSetToCategory(ResultSet rs) throws SQLException {
@@ -2,16 +2,25 @@ package com.pahanaedu.dao.custom;
  
 import java.util.List;
 
+import com.pahanaedu.cache.CustomerDirectory;
 import com.pahanaedu.dao.CrudDao;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Customer;
 
 public interface CustomerDao extends CrudDao<Customer, Long> {
 	Customer getCustomerByTelephone(String telephone) throws Exception;
+
+	PaginatedResponse<Customer> getAll(PageCursor after) throws Exception;
 	
 	List<Customer> getCustomersByName(String name, int pageNumber)  throws  Exception;
 	
 	List<Customer> getActiveCustomers(int pageNumber) throws  Exception;
 	
+	List<Customer> getByIds(List<Long> ids) throws Exception;
+	
+	void loadDirectory(CustomerDirectory.Build build) throws Exception;
+	
 	boolean existsByTeleExcludingId(String telephone, Long excludeId) throws Exception;
 	 
 }
@@ -3,71 +3,103 @@ package com.pahanaedu.dao.custom;
 import java.sql.ResultSet;
 import java.sql.SQLException; 
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.pahanaedu.cache.CustomerDirectory;
+import com.pahanaedu.cache.DashboardCounters;
+import com.pahanaedu.cache.TableVersions;
+import com.pahanaedu.dao.CountCache;
 import com.pahanaedu.dao.CrudUtil;
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Customer; 
 import com.pahanaedu.util.Util;
 
 public class CustomerDaoImpl implements  CustomerDao{
 
+	private static final String TABLE = "customers";
+
 	@Override
 	public boolean create(Customer t) throws Exception {
 
-        return CrudUtil.executeUpdate("INSERT INTO customers (name, telephone, address,  role) VALUES (?, ?, ?,  ?)",
+        // the generated id is needed for CustomerDirectory; executeInsert throws when nothing was inserted
+        long id = CrudUtil.executeInsert("INSERT INTO customers (name, telephone, address,  role) VALUES (?, ?, ?,  ?)",
                 t.getName(), t.getTelephone(), t.getAddress(), t.getRole().name());
+        t.setId(id);
+        if (t.getIsActive() == null) {
+            t.setIsActive(true); // the column default
+        }
+        CountCache.getInstance().rowsInserted(TABLE, 1);
+        TableVersions.getInstance().changed(TABLE);
+        DashboardCounters.getInstance().customerAdded();
+        CustomerDirectory.getInstance().customerSaved(t);
+        return true;
 		 
 	}
 
 	@Override
 	public boolean update(Customer customer) throws Exception {
         // Fetch existing customer
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT name, telephone, address, isActive FROM customers WHERE id = ?",
-            customer.getId()
-        );
+        Customer oldCustomer = get(customer.getId());
 
-        if (!rs.next()) {
+        if (oldCustomer == null) {
             return false; // Not found
         }
 
-        Customer oldCustomer = new Customer();
-        oldCustomer.setName(rs.getString("name"));
-        oldCustomer.setTelephone(rs.getString("telephone"));
-        oldCustomer.setAddress(rs.getString("address"));
-        oldCustomer.setIsActive(rs.getBoolean("isActive"));
-
         // Use old values if null/empty
         String name = Util.anyNullOrEmpty(customer.getName()) ? oldCustomer.getName() : customer.getName();
         String telephone = Util.anyNullOrEmpty(customer.getTelephone()) ? oldCustomer.getTelephone() : customer.getTelephone();
         String address = Util.anyNullOrEmpty(customer.getAddress()) ? oldCustomer.getAddress() : customer.getAddress();
         boolean isActive = Util.anyNullOrEmpty(customer.getIsActive()) ? oldCustomer.getIsActive() : customer.getIsActive();
 
-        return CrudUtil.executeUpdate(
+        boolean updated = CrudUtil.executeUpdate(
             "UPDATE customers SET name=?, telephone=?, address=?, isActive=? WHERE id=?",
             name, telephone, address, isActive, customer.getId()
         );
+        if (updated) {
+            TableVersions.getInstance().changed(TABLE);
+            if (isActive != Boolean.TRUE.equals(oldCustomer.getIsActive())) {
+                DashboardCounters.getInstance().customerActiveChanged(isActive);
+            }
+            // an edit also moves lastUpdated, which the month-ago customer count depends on
+            DashboardCounters.getInstance().markDirty();
+            Customer saved = new Customer(name, telephone, address);
+            saved.setId(customer.getId());
+            saved.setIsActive(isActive);
+            CustomerDirectory.getInstance().customerSaved(saved);
+        }
+        return updated;
 	}
 
 	@Override
 	public boolean delete(Long id) throws Exception {
+        Customer oldCustomer = get(id);
 
-        return CrudUtil.executeUpdate("DELETE FROM customers WHERE id = ?",
+        boolean deleted = CrudUtil.executeUpdate("DELETE FROM customers WHERE id = ?",
                 id);
+        if (deleted) {
+            CountCache.getInstance().rowsDeleted(TABLE, 1);
+            TableVersions.getInstance().changed(TABLE);
+            CustomerDirectory.getInstance().customerRemoved(id);
+            if (oldCustomer != null) {
+                DashboardCounters.getInstance().customerRemoved(Boolean.TRUE.equals(oldCustomer.getIsActive()));
+            } else {
+                DashboardCounters.getInstance().markDirty();
+            }
+        }
+        return deleted;
 		
 	}
 
 
 	@Override
 	public Customer get(Long id) throws Exception {
-		ResultSet rs = CrudUtil.executeQuery("SELECT * FROM customers WHERE id = ?", id);
-		
-	    if (rs.next()) {
-	          return mapResultSetToCustomer(rs);
-	        }
-	        return null;
+		return CrudUtil.queryOne("SELECT * FROM customers WHERE id = ?", this::mapResultSetToCustomer, id);
 	}
 
 	@Override
@@ -80,41 +112,70 @@ public class CustomerDaoImpl implements  CustomerDao{
 	    
 	    try { 
 
-	           ResultSet rs = CrudUtil.executeQuery(
-	        		   "SELECT *, COUNT(*) OVER() AS total_count " +
+	           customers = CrudUtil.query(
+	        		   "SELECT * " +
 	        		            "FROM customers " +
-	        		            "ORDER BY lastUpdated DESC " +
+	        		            "ORDER BY lastUpdated DESC, id DESC " +
 	        		            "LIMIT ? OFFSET ?",
-	        		            pageSize, offset 
+	        		   this::mapResultSetToCustomer,
+	        		   pageSize, offset 
 	           );
-	           while (rs.next()) {
-	               customers.add(mapResultSetToCustomer(rs));
-	               if (totalCount == 0) {
-	                   totalCount = rs.getInt("total_count"); // total count is same for all rows
-	               }
-	           } 
-	           
 
+	           // total is kept by CountCache instead of being recounted with every page
+	           totalCount = (int) CountCache.getInstance().total(TABLE);
 	           totalPages = (int) Math.ceil((double) totalCount / pageSize);
 
 	    } catch (Exception e) {
 	        e.printStackTrace();
 	    }
 
-	    return new PaginatedResponse<Customer>(customers, totalPages, totalCount);
+	    return new PaginatedResponse<Customer>(customers, totalPages, totalCount, nextCursor(customers, pageSize));
+	}
+
+	// Keyset page: seeks past the cursor on (lastUpdated, id), so deep pages cost the same as the first
+	@Override
+	public PaginatedResponse<Customer> getAll(PageCursor after) throws Exception {
+	    int pageSize = 20;
+	    List<Customer> customers;
+	    if (after == null) {
+	        customers = CrudUtil.query(
+	            "SELECT * FROM customers ORDER BY lastUpdated DESC, id DESC LIMIT ?",
+	            this::mapResultSetToCustomer,
+	            pageSize
+	        );
+	    } else {
+	        LocalDateTime lastUpdated = after.getDateTime(0);
+	        customers = CrudUtil.query(
+	            "SELECT * FROM customers WHERE lastUpdated < ? OR (lastUpdated = ? AND id < ?) " +
+	            "ORDER BY lastUpdated DESC, id DESC LIMIT ?",
+	            this::mapResultSetToCustomer,
+	            lastUpdated, lastUpdated, after.getId(), pageSize
+	        );
+	    }
+
+	    int totalCount = (int) CountCache.getInstance().total(TABLE);
+	    int totalPages = (int) Math.ceil((double) totalCount / pageSize);
+
+	    return new PaginatedResponse<Customer>(customers, totalPages, totalCount, nextCursor(customers, pageSize));
+	}
+
+	// Only a full page can have more rows after it
+	private String nextCursor(List<Customer> customers, int pageSize) {
+	    if (customers.size() < pageSize) {
+	        return null;
+	    }
+	    Customer last = customers.get(customers.size() - 1);
+	    return PageCursor.encode(last.getId(), last.getLastUpdated());
 	}
 
 	@Override
 	public Customer getCustomerByTelephone(String telephone)  { 
 	        try {
-	        	ResultSet rs = CrudUtil.executeQuery(
+	        	return CrudUtil.queryOne(
 	                    "SELECT * FROM customers WHERE telephone = ?",
+	                    this::mapResultSetToCustomer,
 	                    telephone
 	                );
-	                if (rs.next()) {
-	                    return mapResultSetToCustomer(rs);
-	                }
-	                return null;
 	        } catch (Exception e) {
 	            e.printStackTrace();
 	        }
@@ -127,14 +188,11 @@ public class CustomerDaoImpl implements  CustomerDao{
 	        int offset = (pageNumber - 1) * 20;
 	        
 	        try { 
-	            ResultSet rs = CrudUtil.executeQuery(
+	            return CrudUtil.query(
 	                "SELECT * FROM customers WHERE LOWER(name) LIKE ? ORDER BY lastUpdated DESC LIMIT 20 OFFSET ?",
+	                this::mapResultSetToCustomer,
 	                "%" + name.toLowerCase() + "%", offset
 	            );
-	            while (rs.next()) {
-	                customers.add(mapResultSetToCustomer(rs));
-	            }
-	            return customers;
 	        } catch (Exception e) {
 	            e.printStackTrace();
 	        }
@@ -148,30 +206,55 @@ public class CustomerDaoImpl implements  CustomerDao{
 	       
 	        try {
 
-	            ResultSet rs = CrudUtil.executeQuery(
+	            return CrudUtil.query(
 	                "SELECT * FROM customers WHERE isActive = TRUE ORDER BY lastUpdated DESC LIMIT 20 OFFSET ?",
+	                this::mapResultSetToCustomer,
 	                offset
 	            );
-	            while (rs.next()) {
-	                customers.add(mapResultSetToCustomer(rs));
-	            }
-	            return customers;
 	        } catch (Exception e) {
 	            e.printStackTrace();
 	        }
 	        return customers;
 	}
  
+    // Several customers in one IN query, in the order of the ids given; unknown ids are skipped
+    @Override
+    public List<Customer> getByIds(List<Long> ids) throws Exception {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Customer> byId = new HashMap<>();
+        CrudUtil.queryForEach(
+            "SELECT * FROM customers WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+            rs -> {
+                Customer customer = mapResultSetToCustomer(rs);
+                byId.put(customer.getId(), customer);
+            },
+            ids.toArray()
+        );
+        List<Customer> customers = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Customer customer = byId.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+
+    // Streams every customer into a CustomerDirectory load
+    @Override
+    public void loadDirectory(CustomerDirectory.Build build) throws Exception {
+        CrudUtil.queryForEach("SELECT * FROM customers", rs -> build.add(mapResultSetToCustomer(rs)));
+    }
+
     @Override
     public boolean existsByTeleExcludingId(String telephone, Long excludeId) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery(
+        return CrudUtil.queryOne(
             "SELECT COUNT(*) FROM customers WHERE telephone = ? AND id <> ?",
+            rs -> rs.getInt(1) > 0,
             telephone, excludeId
         );
-        if (rs.next()) {
-            return rs.getInt(1) > 0;
-        }
-        return false;
     }
 
     
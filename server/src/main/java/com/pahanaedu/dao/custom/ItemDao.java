@@ -1,17 +1,28 @@
 package com.pahanaedu.dao.custom;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.pahanaedu.cache.ItemSearchIndex;
 import com.pahanaedu.dao.CrudDao;
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Item;
 
 public interface ItemDao extends CrudDao<Item, Long> {
 
-	PaginatedResponse<Item> searchByName(String keyword, int pageNumber) throws Exception;
-	// Search items by name with pagination
+	PaginatedResponse<Item> searchByName(String keyword, int pageNumber, boolean exactCount) throws Exception;
+	// Search items by name with pagination; exactCount=false lets the total be an estimate
 
-	PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int pageNumber) throws Exception;
+	PaginatedResponse<Item> getAll(PageCursor after) throws Exception;
+	// Next page after the cursor (null for the first page)
+
+	PaginatedResponse<Item> searchByName(String keyword, PageCursor after, boolean exactCount) throws Exception;
+
+	PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, PageCursor after, boolean exactCount) throws Exception;
+
+	PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int pageNumber, boolean exactCount) throws Exception;
 	// Get all items under a specific category
 
 	List<Item> getLowStockItems(int threshold) throws Exception;
@@ -20,6 +31,21 @@ public interface ItemDao extends CrudDao<Item, Long> {
 	boolean updateStock(Long itemId, int newStock) throws Exception;
 	// Update stock for a specific item
 
+	boolean incrementStock(Long itemId, int qty) throws Exception;
+	// Add received stock in place, without reading the current level first
+
+	List<Item> getByIds(Collection<Long> ids) throws Exception;
+	// Fetch several items in one query
+
+	boolean reloadCache() throws Exception;
+	// Load the whole catalog into the item cache; false when it does not fit
+
+	void loadNames(ItemSearchIndex.Build build) throws Exception;
+	// Add every item's id and name to a search index build
+
+	List<Long> decrementStock(Map<Long, Integer> qtyByItemId) throws Exception;
+	// Take qty off each item only where enough stock remains; returns the item ids that had too little
+
 	boolean updateDiscount(Long itemId, double discount, int qtyToAllowDiscount) throws Exception;
 	// Change discount and quantity required for discount
 
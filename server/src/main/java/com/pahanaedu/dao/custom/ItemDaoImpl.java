@@ -2,44 +2,62 @@ package com.pahanaedu.dao.custom;
 
 import java.sql.ResultSet;
 import java.sql.SQLException; 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Objects;
+
+import com.pahanaedu.cache.CategoryRegistry;
+import com.pahanaedu.cache.DashboardCounters;
+import com.pahanaedu.cache.ItemCache;
+import com.pahanaedu.cache.ItemSearchIndex;
+import com.pahanaedu.cache.TableVersions;
+import com.pahanaedu.dao.CountCache;
 import com.pahanaedu.dao.CrudUtil;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dao.RowCount;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Item;
 import com.pahanaedu.util.Util;
 
 public class ItemDaoImpl implements ItemDao {
 
+    private static final String TABLE = "item";
+
     @Override
     public boolean create(Item t) throws Exception {
-        return CrudUtil.executeUpdate(
+        // the generated id is needed to index the new name; executeInsert throws when nothing was inserted
+        long itemId = CrudUtil.executeInsert(
             "INSERT INTO item (name, unit_price, stock_available, discount, qty_to_allow_discount,  category_id) " +
             "VALUES (?, ?, ?, ?, ?, ?)",
             t.getName(), t.getUnitPrice(), t.getStockAvailable(), t.getDiscount(),
             t.getQtyToAllowDiscount(),  t.getCategoryId()
         );
+        t.setItemId(itemId);
+        CountCache.getInstance().rowsInserted(TABLE, 1);
+        CategoryRegistry.getInstance().invalidate();
+        TableVersions.getInstance().changed(TABLE);
+        DashboardCounters.getInstance().itemAdded(stockOf(t), stockValue(t));
+        ItemSearchIndex.getInstance().itemSaved(itemId, t.getName());
+        return true;
     }
 
     @Override
     public boolean update(Item item) throws Exception {
         // Fetch existing item
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * FROM item WHERE item_id = ?",
-            item.getItemId()
-        );
+        Item oldItem = get(item.getItemId());
 
-        if (!rs.next()) {
+        if (oldItem == null) {
             return false; // not found
         }
 
-        Item oldItem = mapResultSetToItem(rs);
-
         // Use old values if null/empty
         String name =  Util.anyNullOrEmpty(item.getName())  ? oldItem.getName() : item.getName();
         Double unitPrice = Util.anyNullOrEmpty(item.getUnitPrice()) ? oldItem.getUnitPrice() : item.getUnitPrice();
-        Integer stockAvailable = Util.anyNullOrEmpty(item.getStockAvailable()) ? oldItem.getStockAvailable() : item.getStockAvailable();
         Double discount = Util.anyNullOrEmpty(item.getDiscount())  ? oldItem.getDiscount() : item.getDiscount();
         
         Integer qtyToAllowDiscount;
@@ -52,158 +70,308 @@ public class ItemDaoImpl implements ItemDao {
         }
         Long categoryId = Util.anyNullOrEmpty(item.getCategoryId()) ? oldItem.getCategoryId() : item.getCategoryId();
 
-        // Perform update
-        return CrudUtil.executeUpdate(
-            "UPDATE item SET name=?, unit_price=?, stock_available=?, discount=?, qty_to_allow_discount=?, category_id=? WHERE item_id=?",
-            name, unitPrice, stockAvailable, discount, qtyToAllowDiscount, categoryId, item.getItemId()
+        // Perform update; a null stock leaves the live value alone instead of writing back the one read above
+        boolean updated = CrudUtil.executeUpdate(
+            "UPDATE item SET name=?, unit_price=?, stock_available=COALESCE(?, stock_available), discount=?, qty_to_allow_discount=?, category_id=? WHERE item_id=?",
+            name, unitPrice, item.getStockAvailable(), discount, qtyToAllowDiscount, categoryId, item.getItemId()
         );
+        if (updated) {
+            // name and category feed the search and category filters
+            CountCache.getInstance().rowsUpdated(TABLE);
+            ItemCache.getInstance().invalidate(item.getItemId());
+            TableVersions.getInstance().changed(TABLE);
+            if (!categoryId.equals(oldItem.getCategoryId())) {
+                // the per-category item counts moved
+                CategoryRegistry.getInstance().invalidate();
+            }
+            if (!name.equals(oldItem.getName())) {
+                ItemSearchIndex.getInstance().itemSaved(item.getItemId(), name);
+            }
+            int newStock = item.getStockAvailable() != null ? item.getStockAvailable() : stockOf(oldItem);
+            // the database leaves last_updated_at alone when no value changes
+            boolean changed = !Objects.equals(name, oldItem.getName())
+                    || !Objects.equals(unitPrice, oldItem.getUnitPrice()) || newStock != stockOf(oldItem)
+                    || !Objects.equals(discount, oldItem.getDiscount())
+                    || !Objects.equals(qtyToAllowDiscount, oldItem.getQtyToAllowDiscount())
+                    || !Objects.equals(categoryId, oldItem.getCategoryId());
+            if (changed) {
+                DashboardCounters.getInstance().stockChanged(newStock - stockOf(oldItem),
+                        newStock * unitPrice - stockValue(oldItem), oldItem);
+            }
+        }
+        return updated;
     }
 
 
     @Override
     public boolean delete(Long id) throws Exception {
-        return CrudUtil.executeUpdate("DELETE FROM item WHERE item_id = ?", id);
+        Item oldItem = get(id);
+        boolean deleted = CrudUtil.executeUpdate("DELETE FROM item WHERE item_id = ?", id);
+        if (deleted) {
+            CountCache.getInstance().rowsDeleted(TABLE, 1);
+            ItemCache.getInstance().invalidate(id);
+            TableVersions.getInstance().changed(TABLE);
+            CategoryRegistry.getInstance().invalidate();
+            ItemSearchIndex.getInstance().itemRemoved(id);
+            if (oldItem != null) {
+                DashboardCounters.getInstance().itemRemoved(stockOf(oldItem), stockValue(oldItem), oldItem);
+            } else {
+                DashboardCounters.getInstance().markDirty();
+            }
+        }
+        return deleted;
     }
 
+    // Served from ItemCache when possible; a miss reads the row and caches it
     @Override
     public Item get(Long id) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery("SELECT * FROM item WHERE item_id = ?", id);
-        if (rs.next()) {
-            return mapResultSetToItem(rs);
+        ItemCache cache = ItemCache.getInstance();
+        Item item = cache.get(id);
+        if (item != null) {
+            return item;
         }
-        return null;
+        long stamp = cache.stamp();
+        item = CrudUtil.queryOne("SELECT * FROM item WHERE item_id = ?", this::mapResultSetToItem, id);
+        cache.put(item, stamp);
+        return item;
     }
 
     @Override
     public PaginatedResponse<Item> getAll(int pageNumber) throws Exception {
-        List<Item> items = new ArrayList<>();
-	    int pageSize = 20;
-	    int offset = (pageNumber - 1) * pageSize;
-	    int totalCount = 0;
-	    int totalPages = 0; 
-
-        ResultSet rs = CrudUtil.executeQuery(
-        		"SELECT *, COUNT(*) OVER() AS total_count " +
-    		            "FROM item " +
-    		            "ORDER BY last_updated_at DESC " +
-    		            "LIMIT ? OFFSET ?" ,
-            pageSize,offset
-        );
-        while (rs.next()) {
-            items.add(mapResultSetToItem(rs));
-            if (totalCount == 0) {
-                totalCount = rs.getInt("total_count"); // total count is same for all rows
-            }
-        } 
-        
+        return queryPage("", new Object[0], pageNumber, null, true);
+    }
 
-        totalPages = (int) Math.ceil((double) totalCount / pageSize);
+    @Override
+    public PaginatedResponse<Item> searchByName(String keyword, int pageNumber, boolean exactCount) throws Exception {
+        return queryPage("LOWER(name) LIKE ?", new Object[] { "%" + keyword.toLowerCase() + "%" }, pageNumber, null, exactCount);
+    }
 
-        return new PaginatedResponse<Item>(items, totalPages, totalCount);
+    @Override
+    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int pageNumber, boolean exactCount) throws Exception {
+        return queryPage("category_id = ?", new Object[] { categoryId }, pageNumber, null, exactCount);
     }
 
     @Override
-    public PaginatedResponse<Item> searchByName(String keyword, int pageNumber) throws Exception {
-        List<Item> items = new ArrayList<>();
-	    int pageSize = 20;
-	    int offset = (pageNumber - 1) * pageSize;
-	    int totalCount = 0;
-	    int totalPages = 0; 
-
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * , COUNT(*) OVER() AS total_count FROM item WHERE LOWER(name) LIKE ? ORDER BY last_updated_at DESC LIMIT ? OFFSET ?",
-            "%" + keyword.toLowerCase() + "%",pageSize, offset
-        );
-        while (rs.next()) {
-            items.add(mapResultSetToItem(rs));
-            if (totalCount == 0) {
-                totalCount = rs.getInt("total_count"); // total count is same for all rows
-            }
-        } 
-        
+    public PaginatedResponse<Item> getAll(PageCursor after) throws Exception {
+        return queryPage("", new Object[0], 1, after, true);
+    }
 
-        totalPages = (int) Math.ceil((double) totalCount / pageSize);
+    @Override
+    public PaginatedResponse<Item> searchByName(String keyword, PageCursor after, boolean exactCount) throws Exception {
+        return queryPage("LOWER(name) LIKE ?", new Object[] { "%" + keyword.toLowerCase() + "%" }, 1, after, exactCount);
+    }
 
-        return new PaginatedResponse<Item>(items, totalPages, totalCount);
+    @Override
+    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, PageCursor after, boolean exactCount) throws Exception {
+        return queryPage("category_id = ?", new Object[] { categoryId }, 1, after, exactCount);
     }
 
     @Override
-    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int pageNumber) throws Exception {
-        List<Item> items = new ArrayList<>();
-	    int pageSize = 20;
-	    int offset = (pageNumber - 1) * pageSize;
-	    int totalCount = 0;
-	    int totalPages = 0; 
-
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * , COUNT(*) OVER() AS total_count FROM item WHERE category_id = ? ORDER BY last_updated_at DESC LIMIT ? OFFSET ?",
-            categoryId,pageSize, offset
+    public List<Item> getLowStockItems(int threshold) throws Exception {
+        return CrudUtil.query(
+            "SELECT * FROM item WHERE stock_available <= ? ORDER BY stock_available ASC",
+            this::mapResultSetToItem,
+            threshold
         );
-        while (rs.next()) {
-            items.add(mapResultSetToItem(rs));
-            if (totalCount == 0) {
-                totalCount = rs.getInt("total_count"); // total count is same for all rows
-            }
-        } 
-        
+    }
 
-        totalPages = (int) Math.ceil((double) totalCount / pageSize);
+    @Override
+    public boolean updateStock(Long itemId, int newStock) throws Exception {
+        Item oldItem = get(itemId);
+        boolean updated = CrudUtil.executeUpdate(
+            "UPDATE item SET stock_available=?  WHERE item_id=?",
+            newStock, itemId
+        );
+        ItemCache.getInstance().invalidate(itemId);
+        TableVersions.getInstance().changed(TABLE);
+        if (updated && oldItem != null && newStock != stockOf(oldItem)) {
+            int delta = newStock - stockOf(oldItem);
+            DashboardCounters.getInstance().stockChanged(delta, delta * priceOf(oldItem), oldItem);
+        }
+        return updated;
+    }
 
-        return new PaginatedResponse<Item>(items, totalPages, totalCount);
+    @Override
+    public boolean incrementStock(Long itemId, int qty) throws Exception {
+        Item item = get(itemId);
+        boolean updated = CrudUtil.executeUpdate(
+            "UPDATE item SET stock_available = stock_available + ? WHERE item_id = ?",
+            qty, itemId
+        );
+        ItemCache.getInstance().invalidate(itemId);
+        TableVersions.getInstance().changed(TABLE);
+        if (updated && item != null && qty != 0) {
+            DashboardCounters.getInstance().stockChanged(qty, qty * priceOf(item), item);
+        }
+        return updated;
     }
 
+    // Cached items are used as they are; only the misses go to the database, in one IN query
     @Override
-    public List<Item> getLowStockItems(int threshold) throws Exception {
+    public List<Item> getByIds(Collection<Long> ids) throws Exception {
+        ItemCache cache = ItemCache.getInstance();
         List<Item> items = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Item item = cache.get(id);
+            if (item != null) {
+                items.add(item);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return items;
+        }
 
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT * FROM item WHERE stock_available <= ? ORDER BY stock_available ASC",
-            threshold
+        long stamp = cache.stamp();
+        String placeholders = String.join(",", Collections.nCopies(missing.size(), "?"));
+        List<Item> loaded = CrudUtil.query(
+            "SELECT * FROM item WHERE item_id IN (" + placeholders + ")",
+            this::mapResultSetToItem,
+            missing.toArray()
         );
-        while (rs.next()) {
-            items.add(mapResultSetToItem(rs));
-        }
+        cache.putAll(loaded, stamp);
+        items.addAll(loaded);
         return items;
     }
 
+    // Full-reload mode for catalogs that fit in memory: loads every item into ItemCache in one query
     @Override
-    public boolean updateStock(Long itemId, int newStock) throws Exception {
-        return CrudUtil.executeUpdate(
-            "UPDATE item SET stock_available=?  WHERE item_id=?",
-            newStock, itemId
+    public boolean reloadCache() throws Exception {
+        ItemCache cache = ItemCache.getInstance();
+        long stamp = cache.stamp();
+        List<Item> items = CrudUtil.query("SELECT * FROM item", this::mapResultSetToItem);
+        return cache.reloadAll(items, stamp);
+    }
+
+    // Streams every item's id and name, for building ItemSearchIndex
+    @Override
+    public void loadNames(ItemSearchIndex.Build build) throws Exception {
+        CrudUtil.queryForEach("SELECT item_id, name FROM item", rs -> build.add(rs.getLong("item_id"), rs.getString("name")));
+    }
+
+    @Override
+    public List<Long> decrementStock(Map<Long, Integer> qtyByItemId) throws Exception {
+        List<Long> itemIds = new ArrayList<>(qtyByItemId.keySet());
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Long itemId : itemIds) {
+            int qty = qtyByItemId.get(itemId);
+            batchArgs.add(new Object[] { qty, itemId, qty });
+        }
+
+        // The stock check happens in the same statement as the write, so concurrent sales cannot oversell
+        int[] counts = CrudUtil.executeBatch(
+            "UPDATE item SET stock_available = stock_available - ? WHERE item_id = ? AND stock_available >= ?",
+            batchArgs
         );
+        ItemCache.getInstance().invalidate(itemIds);
+        TableVersions.getInstance().changed(TABLE);
+        // no DashboardCounters event here: the sale reports the stock it took, together with its total
+
+        List<Long> insufficient = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                insufficient.add(itemIds.get(i));
+            }
+        }
+        return insufficient;
     }
 
     @Override
     public boolean updateDiscount(Long itemId, double discount, int qtyToAllowDiscount) throws Exception {
-        return CrudUtil.executeUpdate(
+        Item oldItem = get(itemId);
+        boolean updated = CrudUtil.executeUpdate(
             "UPDATE item SET discount=?, qty_to_allow_discount=?  WHERE item_id=?",
             discount, qtyToAllowDiscount, itemId
         );
+        ItemCache.getInstance().invalidate(itemId);
+        TableVersions.getInstance().changed(TABLE);
+        // no stock moves, but a changed row restarts its last_updated_at and so leaves the month-ago stock
+        if (updated && oldItem != null && (!Objects.equals(discount, oldItem.getDiscount())
+                || !Objects.equals(qtyToAllowDiscount, oldItem.getQtyToAllowDiscount()))) {
+            DashboardCounters.getInstance().itemTouched(oldItem);
+        }
+        return updated;
     }
 
     @Override
     public boolean existsByName(String name) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery("SELECT COUNT(*) FROM item WHERE name = ?", name);
-        if (rs.next()) {
-            return rs.getInt(1) > 0;
-        }
-        return false;
+        return CrudUtil.queryOne("SELECT COUNT(*) FROM item WHERE name = ?", rs -> rs.getInt(1) > 0, name);
     }
 
     @Override
     public boolean existsByNameExcludingId(String name, Long excludeId) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery(
+        return CrudUtil.queryOne(
             "SELECT COUNT(*) FROM item WHERE name = ? AND item_id <> ?",
+            rs -> rs.getInt(1) > 0,
             name, excludeId
         );
-        if (rs.next()) {
-            return rs.getInt(1) > 0;
+    }
+
+    // One page, newest first. With a cursor it seeks past (last_updated_at, item_id), so every page is an index range scan;
+    // without one it uses LIMIT/OFFSET for page-number navigation. The total comes from CountCache, not the page query.
+    private PaginatedResponse<Item> queryPage(String filter, Object[] filterArgs, int pageNumber, PageCursor after, boolean exactCount) throws Exception {
+        int pageSize = 20;
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>(Arrays.asList(filterArgs));
+        if (!filter.isEmpty()) {
+            conditions.add(filter);
+        }
+        if (after != null) {
+            LocalDateTime lastUpdatedAt = after.getDateTime(0);
+            conditions.add("(last_updated_at < ? OR (last_updated_at = ? AND item_id < ?))");
+            args.add(lastUpdatedAt);
+            args.add(lastUpdatedAt);
+            args.add(after.getId());
+        }
+        args.add(pageSize);
+        String limit = "LIMIT ?";
+        if (after == null) {
+            limit = "LIMIT ? OFFSET ?";
+            args.add((pageNumber - 1) * pageSize);
         }
-        return false;
+
+        List<Item> items = CrudUtil.query(
+            "SELECT * FROM item " + where(conditions) + "ORDER BY last_updated_at DESC, item_id DESC " + limit,
+            this::mapResultSetToItem,
+            args.toArray()
+        );
+
+        RowCount total = CountCache.getInstance().count(TABLE, filter, exactCount, filterArgs);
+        int totalPages = (int) Math.ceil((double) total.getCount() / pageSize);
+
+        PaginatedResponse<Item> page = new PaginatedResponse<Item>(items, totalPages, (int) total.getCount(), nextCursor(items, pageSize));
+        page.setTotalExact(total.isExact());
+        return page;
+    }
+
+    private String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
+    }
+
+    // Only a full page can have more rows after it
+    private String nextCursor(List<Item> items, int pageSize) {
+        if (items.size() < pageSize) {
+            return null;
+        }
+        Item last = items.get(items.size() - 1);
+        return PageCursor.encode(last.getItemId(), last.getLastUpdatedAt());
+    }
+
+    // Null-safe stock and price, for the dashboard counters
+    private static int stockOf(Item item) {
+        return item.getStockAvailable() != null ? item.getStockAvailable() : 0;
+    }
+
+    private static double priceOf(Item item) {
+        return item.getUnitPrice() != null ? item.getUnitPrice() : 0;
+    }
+
+    private static double stockValue(Item item) {
+        return stockOf(item) * priceOf(item);
     }
 
-    
     // Mapper
     private Item mapResultSetToItem(ResultSet rs) throws SQLException {
         Item item = new Item();
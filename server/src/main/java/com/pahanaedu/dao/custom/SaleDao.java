@@ -1,16 +1,29 @@
 package com.pahanaedu.dao.custom;
  
+import java.util.Collection;
 import java.util.List;
 
 import com.pahanaedu.dao.CrudDao;
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.dto.SaleKey;
+import com.pahanaedu.dto.SaleSummary;
 import com.pahanaedu.model.Sale;
 import com.pahanaedu.model.Customer;
 
 public interface SaleDao extends CrudDao<Sale, Long> {
 	long  createSale(Sale sale) throws Exception;
-	PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int pageNumber) throws Exception;
+	PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int pageNumber, boolean exactCount) throws Exception;
+	PaginatedResponse<Sale> getAll(PageCursor after) throws Exception;
     boolean updatePayment(Long saleId, double paidAmount, double balance) throws Exception; 
     List<Sale> getRecentSales(int limit) throws Exception;
+    PaginatedResponse<SaleSummary> getSummaries(int pageNumber) throws Exception;
+    PaginatedResponse<SaleSummary> getSummaries(PageCursor after) throws Exception;
+    PaginatedResponse<SaleSummary> getSummariesByCustomer(Customer customer, int pageNumber, boolean exactCount) throws Exception;
+    List<SaleSummary> getRecentSummaries(int limit) throws Exception;
+    SaleKey getSaleKey(long saleId) throws Exception;
+    List<SaleKey> getSaleKeysByCustomers(Collection<Long> customerIds, int limit) throws Exception;
+    List<Sale> getByIds(List<Long> saleIds) throws Exception;
+    List<SaleSummary> getSummariesByIds(List<Long> saleIds) throws Exception;
 
 }
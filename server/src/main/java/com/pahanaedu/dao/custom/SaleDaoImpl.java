@@ -2,23 +2,38 @@ package com.pahanaedu.dao.custom;
 
 import java.sql.ResultSet;
 import java.sql.SQLException; 
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map; 
 
+import com.pahanaedu.dao.CountCache;
 import com.pahanaedu.dao.CrudUtil;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dao.RowCount;
 import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.dto.SaleKey;
+import com.pahanaedu.dto.SaleSummary;
 import com.pahanaedu.model.Customer;
 import com.pahanaedu.model.Item;
 import com.pahanaedu.model.Sale;
 import com.pahanaedu.model.SaleItem; 
 
 public class SaleDaoImpl implements SaleDao {
+
+    private static final String TABLE = "sales";
+    private static final int PAGE_SIZE = 20;
+    // Correlated count served by the sale_id index on sale_items, so summaries never touch the lines themselves
+    private static final String LINE_COUNT = "(SELECT COUNT(*) FROM sale_items si WHERE si.sale_id = s.sale_id) AS line_count";
  
     public long  createSale(Sale sale) throws Exception {
-    	return  CrudUtil.executeInsert(
+    	long saleId = CrudUtil.executeInsert(
     		 "INSERT INTO sales (customer_id, total_amount, total_discount, sub_total, paid, balance) VALUES (?, ?, ?, ?, ?, ?)",
             sale.getCustomerId(),  
             sale.getTotalAmount(),
@@ -27,6 +42,8 @@ public class SaleDaoImpl implements SaleDao {
             sale.getPaid(),
             sale.getBalance() 
         );
+        CountCache.getInstance().rowsInserted(TABLE, 1);
+        return saleId;
     }
 
     public boolean updatePayment(Long saleId, double paidAmount, double balance) throws Exception {
@@ -48,12 +65,8 @@ public class SaleDaoImpl implements SaleDao {
                 "ON s.sale_id = si.sale_id LEFT JOIN item i ON si.item_id = i.item_id WHERE s.sale_id = ?";
 
 
-        ResultSet rs = CrudUtil.executeQuery(sql, id);
-
         Map<Long, Sale> saleMap = new HashMap<>();
-        while (rs.next()) {
-            mapDetailedResultSetToSale(rs, saleMap);
-        }
+        CrudUtil.queryForEach(sql, rs -> mapDetailedResultSetToSale(rs, saleMap), id);
 
         // since it's get(id), there should be only one sale
         return saleMap.values().stream().findFirst().orElse(null);
@@ -62,115 +75,233 @@ public class SaleDaoImpl implements SaleDao {
 
     @Override
     public PaginatedResponse<Sale> getAll(int pageNumber) throws Exception {
-        List<Sale> sales = new ArrayList<>();
-	    int pageSize = 20;
-	    int offset = (pageNumber - 1) * pageSize;
-	    int totalCount = 0;
-	    int totalPages = 0; 
-        ResultSet rs = CrudUtil.executeQuery(
-                "SELECT s.*, c.name AS customer_name, c.telephone, " +
-                        "       si.sale_item_id, si.item_id, si.qty, si.discount_amount, si.item_total, " +
-                		"i.name AS item_name, i.unit_price, i.category_id," +
-                        "       COUNT(*) OVER() AS total_count " +
-                        "FROM sales s " +
-                        "JOIN customers c ON s.customer_id = c.id " +
-                        "LEFT JOIN sale_items si ON s.sale_id = si.sale_id " + 
-                        "LEFT JOIN item i ON si.item_id = i.item_id " +
-                        "ORDER BY s.sale_date DESC, s.sale_time DESC " +
-                        "LIMIT ? OFFSET ?",
-            pageSize, offset
-        );
-	Map<Long, Sale> saleMap = new LinkedHashMap<>();
-
-
-        while (rs.next()) {
-            mapDetailedResultSetToSale(rs, saleMap);
+        return queryPage("", new Object[0], pageNumber, null, true);
+    }
 
-            if (totalCount == 0) {
-                totalCount = rs.getInt("total_count");
-            }
-        }
+    @Override
+    public PaginatedResponse<Sale> getAll(PageCursor after) throws Exception {
+        return queryPage("", new Object[0], 1, after, true);
+    }
+ 
+    @Override
+    public List<Sale> getRecentSales(int limit) throws Exception {
+        Map<Long, Sale> saleMap = querySaleHeaders(
+                "SELECT s.*, c.name AS customer_name, c.telephone " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id " +
+                        "ORDER BY s.sale_date DESC, s.sale_time DESC, s.sale_id DESC LIMIT ?",
+                limit);
+        loadSaleItems(saleMap);
+
+        return new ArrayList<>(saleMap.values());
+    }
 
-        sales.addAll(saleMap.values());
-        
-        totalPages = (int) Math.ceil((double) totalCount / pageSize);
+    
+    @Override 
+    public PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int pageNumber, boolean exactCount) throws Exception {
+        return queryPage("customer_id IN (SELECT id FROM customers WHERE telephone = ?)",
+                new Object[] { customer.getTelephone() }, pageNumber, null, exactCount);
+    }
 
+    @Override
+    public PaginatedResponse<SaleSummary> getSummaries(int pageNumber) throws Exception {
+        return querySummaryPage("", new Object[0], pageNumber, null, true);
+    }
 
-        return new PaginatedResponse<Sale>(sales, totalPages, totalCount);
+    @Override
+    public PaginatedResponse<SaleSummary> getSummaries(PageCursor after) throws Exception {
+        return querySummaryPage("", new Object[0], 1, after, true);
     }
- 
+
     @Override
-    public List<Sale> getRecentSales(int limit) throws Exception {
-        List<Sale> sales = new ArrayList<>();
-
-        ResultSet rs = CrudUtil.executeQuery(
-            " SELECT  s.*, c.name AS customer_name, c.telephone, si.sale_item_id, si.item_id,"+
-                     "si.qty,  si.discount_amount, si.item_total, i.name AS item_name, i.unit_price,"+
-                     "i.category_id FROM sales s JOIN customers c ON s.customer_id = c.id LEFT JOIN sale_items si "+
-                     "ON s.sale_id = si.sale_id LEFT JOIN item i ON si.item_id = i.item_id "+
-                     " ORDER BY sale_date DESC, sale_time DESC LIMIT ?",
-            limit
-        );
+    public PaginatedResponse<SaleSummary> getSummariesByCustomer(Customer customer, int pageNumber, boolean exactCount) throws Exception {
+        return querySummaryPage("customer_id IN (SELECT id FROM customers WHERE telephone = ?)",
+                new Object[] { customer.getTelephone() }, pageNumber, null, exactCount);
+    }
 
-        // 🟢 Map sales + group items
-         Map<Long, Sale> saleMap = new LinkedHashMap<>();
+    @Override
+    public List<SaleSummary> getRecentSummaries(int limit) throws Exception {
+        return CrudUtil.query(
+                "SELECT s.*, c.name AS customer_name, " + LINE_COUNT + " " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id " +
+                        "ORDER BY s.sale_date DESC, s.sale_time DESC, s.sale_id DESC LIMIT ?",
+                this::mapResultSetToSaleSummary,
+                limit);
+    }
 
+    @Override
+    public SaleKey getSaleKey(long saleId) throws Exception {
+        return CrudUtil.queryOne("SELECT sale_id, sale_date, sale_time FROM sales WHERE sale_id = ?", this::mapResultSetToSaleKey, saleId);
+    }
 
-        while (rs.next()) {
-            mapDetailedResultSetToSale(rs, saleMap);
- 
+    // The customers' newest sales, at most limit of them, read from idx_sales_customer_date_time alone
+    @Override
+    public List<SaleKey> getSaleKeysByCustomers(Collection<Long> customerIds, int limit) throws Exception {
+        if (customerIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        List<Object> args = new ArrayList<>(customerIds);
+        args.add(limit);
+        return CrudUtil.query(
+                "SELECT sale_id, sale_date, sale_time FROM sales WHERE customer_id IN (" + placeholders(customerIds.size()) + ") " +
+                        "ORDER BY sale_date DESC, sale_time DESC, sale_id DESC LIMIT ?",
+                this::mapResultSetToSaleKey,
+                args.toArray());
+    }
 
-        sales.addAll(saleMap.values());
-
+    // Whole sales in the order of the ids given; ids that no longer exist are skipped
+    @Override
+    public List<Sale> getByIds(List<Long> saleIds) throws Exception {
+        if (saleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Sale> saleMap = querySaleHeaders(
+                "SELECT s.*, c.name AS customer_name, c.telephone " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id WHERE s.sale_id IN (" + placeholders(saleIds.size()) + ")",
+                saleIds.toArray());
+        loadSaleItems(saleMap);
+        List<Sale> sales = new ArrayList<>(saleMap.size());
+        for (Long saleId : saleIds) {
+            Sale sale = saleMap.get(saleId);
+            if (sale != null) {
+                sales.add(sale);
+            }
+        }
         return sales;
     }
 
-    
-    @Override 
-    public PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int pageNumber) throws Exception {
-        List<Sale> sales = new ArrayList<>();
-        int pageSize = 20;
-        int offset = (pageNumber - 1) * pageSize;
-        int totalCount = 0;
-        int totalPages = 0;
-
-        ResultSet rs = CrudUtil.executeQuery(
-            "SELECT s.*, c.name AS customer_name, c.telephone, " +
-            "       si.sale_item_id, si.item_id, si.qty, si.discount_amount, si.item_total, "  +
-    		"i.name AS item_name, i.unit_price, i.category_id," +
-            "       COUNT(*) OVER() AS total_count " +
-            "FROM sales s " +
-            "JOIN customers c ON s.customer_id = c.id " +
-            "LEFT JOIN sale_items si ON s.sale_id = si.sale_id " +
-            "LEFT JOIN item i ON si.item_id = i.item_id " +
-            "WHERE c.telephone = ? " +
-            "ORDER BY s.sale_date DESC, s.sale_time DESC " +
-            "LIMIT ? OFFSET ?",
-            customer.getTelephone(),
-            pageSize,
-            offset
-        );
+    @Override
+    public List<SaleSummary> getSummariesByIds(List<Long> saleIds) throws Exception {
+        if (saleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, SaleSummary> byId = new HashMap<>();
+        CrudUtil.queryForEach(
+                "SELECT s.*, c.name AS customer_name, " + LINE_COUNT + " " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id WHERE s.sale_id IN (" + placeholders(saleIds.size()) + ")",
+                rs -> {
+                    SaleSummary summary = mapResultSetToSaleSummary(rs);
+                    byId.put(summary.getSaleId(), summary);
+                },
+                saleIds.toArray());
+        List<SaleSummary> summaries = new ArrayList<>(byId.size());
+        for (Long saleId : saleIds) {
+            SaleSummary summary = byId.get(saleId);
+            if (summary != null) {
+                summaries.add(summary);
+            }
+        }
+        return summaries;
+    }
 
-        // 🟢 Map sales + group items
-         Map<Long, Sale> saleMap = new LinkedHashMap<>();
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
 
+    // One page of sales, newest first, in two steps: the 20 sale headers (with their customer) first,
+    // then all of their lines in a single IN query, so a page always holds 20 whole sales.
+    private PaginatedResponse<Sale> queryPage(String filter, Object[] filterArgs, int pageNumber, PageCursor after, boolean exactCount) throws Exception {
+        List<Object> args = new ArrayList<>();
+        String clause = pageClause(filter, filterArgs, pageNumber, after, args);
+
+        Map<Long, Sale> saleMap = querySaleHeaders(
+                "SELECT s.*, c.name AS customer_name, c.telephone " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id " + clause,
+                args.toArray());
+        loadSaleItems(saleMap);
+
+        List<Sale> sales = new ArrayList<>(saleMap.values());
+        String nextCursor = null;
+        if (sales.size() == PAGE_SIZE) {
+            Sale last = sales.get(sales.size() - 1);
+            nextCursor = PageCursor.encode(last.getSaleId(), last.getSaleDate(), last.getSaleTime());
+        }
+        return toPage(sales, filter, filterArgs, exactCount, nextCursor);
+    }
 
-        while (rs.next()) {
-            mapDetailedResultSetToSale(rs, saleMap);
+    // The same page as headers only, with each sale's line count instead of its lines
+    private PaginatedResponse<SaleSummary> querySummaryPage(String filter, Object[] filterArgs, int pageNumber, PageCursor after, boolean exactCount) throws Exception {
+        List<Object> args = new ArrayList<>();
+        String clause = pageClause(filter, filterArgs, pageNumber, after, args);
+
+        List<SaleSummary> sales = CrudUtil.query(
+                "SELECT s.*, c.name AS customer_name, " + LINE_COUNT + " " +
+                        "FROM sales s JOIN customers c ON s.customer_id = c.id " + clause,
+                this::mapResultSetToSaleSummary,
+                args.toArray());
+
+        String nextCursor = null;
+        if (sales.size() == PAGE_SIZE) {
+            SaleSummary last = sales.get(sales.size() - 1);
+            nextCursor = PageCursor.encode(last.getSaleId(), last.getSaleDate(), last.getSaleTime());
+        }
+        return toPage(sales, filter, filterArgs, exactCount, nextCursor);
+    }
 
-            if (totalCount == 0) {
-                totalCount = rs.getInt("total_count");
-            }
+    // WHERE, ORDER BY and LIMIT for a page of sales, newest first, with its parameters added to args.
+    // With a cursor the page is found by seeking past (sale_date, sale_time, sale_id); without one by LIMIT/OFFSET.
+    private String pageClause(String filter, Object[] filterArgs, int pageNumber, PageCursor after, List<Object> args) {
+        List<String> conditions = new ArrayList<>();
+        args.addAll(Arrays.asList(filterArgs));
+        if (!filter.isEmpty()) {
+            conditions.add(filter);
+        }
+        if (after != null) {
+            LocalDate saleDate = after.getDate(0);
+            LocalTime saleTime = after.getTime(1);
+            conditions.add("(s.sale_date < ? OR (s.sale_date = ? AND (s.sale_time < ? OR (s.sale_time = ? AND s.sale_id < ?))))");
+            args.add(saleDate);
+            args.add(saleDate);
+            args.add(saleTime);
+            args.add(saleTime);
+            args.add(after.getId());
+        }
+        args.add(PAGE_SIZE);
+        String limit = "LIMIT ?";
+        if (after == null) {
+            limit = "LIMIT ? OFFSET ?";
+            args.add((pageNumber - 1) * PAGE_SIZE);
         }
+        String where = conditions.isEmpty() ? "" : "WHERE " + String.join(" AND ", conditions) + " ";
+        return where + "ORDER BY s.sale_date DESC, s.sale_time DESC, s.sale_id DESC " + limit;
+    }
+
+    // The total comes from CountCache, never from the page query
+    private <T> PaginatedResponse<T> toPage(List<T> rows, String filter, Object[] filterArgs, boolean exactCount, String nextCursor) throws Exception {
+        RowCount total = CountCache.getInstance().count(TABLE, filter, exactCount, filterArgs);
+        int totalPages = (int) Math.ceil((double) total.getCount() / PAGE_SIZE);
 
-        sales.addAll(saleMap.values());
-        
-        totalPages = (int) Math.ceil((double) totalCount / pageSize);
+        PaginatedResponse<T> page = new PaginatedResponse<T>(rows, totalPages, (int) total.getCount(), nextCursor);
+        page.setTotalExact(total.isExact());
+        return page;
+    }
 
-        return new PaginatedResponse<Sale>(sales, totalPages, totalCount);
+    // Sale headers keyed by id, in query order, each with an empty line list ready for loadSaleItems
+    private Map<Long, Sale> querySaleHeaders(String sql, Object... args) throws Exception {
+        Map<Long, Sale> saleMap = new LinkedHashMap<>();
+        CrudUtil.queryForEach(sql, rs -> {
+            Sale sale = mapResultSetToSale(rs);
+            sale.setCustomerName(rs.getString("customer_name"));
+            sale.setSaleItems(new ArrayList<>());
+            saleMap.put(sale.getSaleId(), sale);
+        }, args);
+        return saleMap;
     }
 
+    // Lines of every sale in the map, fetched with one query and grouped onto their sales
+    private void loadSaleItems(Map<Long, Sale> saleMap) throws Exception {
+        if (saleMap.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(saleMap.size(), "?"));
+        CrudUtil.queryForEach(
+                "SELECT si.sale_item_id, si.sale_id, si.item_id, si.qty, si.discount_amount, si.item_total, si.last_updated_at, " +
+                        "i.name AS item_name, i.unit_price, i.category_id " +
+                        "FROM sale_items si LEFT JOIN item i ON si.item_id = i.item_id " +
+                        "WHERE si.sale_id IN (" + placeholders + ") ORDER BY si.sale_id, si.sale_item_id",
+            rs -> mapDetailedResultSetToSale(rs, saleMap),
+            saleMap.keySet().toArray()
+        );
+    }
 
     private Sale mapDetailedResultSetToSale(ResultSet rs, java.util.Map<Long, Sale> saleMap) throws SQLException {
         long saleId = rs.getLong("sale_id");
@@ -212,6 +343,26 @@ public class SaleDaoImpl implements SaleDao {
     }
 
 
+    private SaleSummary mapResultSetToSaleSummary(ResultSet rs) throws SQLException {
+        SaleSummary summary = new SaleSummary();
+        summary.setSaleId(rs.getLong("sale_id"));
+        summary.setCustomerId(rs.getLong("customer_id"));
+        summary.setCustomerName(rs.getString("customer_name"));
+        summary.setTotalAmount(rs.getDouble("total_amount"));
+        summary.setTotalDiscount(rs.getDouble("total_discount"));
+        summary.setSubTotal(rs.getDouble("sub_total"));
+        summary.setPaid(rs.getDouble("paid"));
+        summary.setBalance(rs.getDouble("balance"));
+        summary.setSaleDate(rs.getDate("sale_date").toLocalDate());
+        summary.setSaleTime(rs.getTime("sale_time").toLocalTime());
+        summary.setLineCount(rs.getInt("line_count"));
+        return summary;
+    }
+
+    private SaleKey mapResultSetToSaleKey(ResultSet rs) throws SQLException {
+        return new SaleKey(rs.getLong("sale_id"), rs.getDate("sale_date").toLocalDate(), rs.getTime("sale_time").toLocalTime());
+    }
+
     private Sale mapResultSetToSale(ResultSet rs) throws SQLException {
         Sale sale = new Sale();
         sale.setSaleId(rs.getLong("sale_id"));
@@ -7,4 +7,6 @@ import java.util.List;
 
 public interface SaleItemDao extends CrudDao<SaleItem, Long> {
     List<SaleItem> getItemsBySale(Sale sale) throws Exception;
+
+    boolean createAll(List<SaleItem> saleItems) throws Exception;
 }
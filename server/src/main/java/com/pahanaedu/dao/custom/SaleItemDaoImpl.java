@@ -20,28 +20,37 @@ public class SaleItemDaoImpl implements SaleItemDao {
  
  
 
+    // All lines of a sale in one batch, which the driver rewrites into a single multi-row INSERT
+    @Override
+    public boolean createAll(List<SaleItem> saleItems) throws Exception {
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (SaleItem t : saleItems) {
+            batchArgs.add(new Object[] { t.getSaleId(), t.getItem().getItemId(), t.getQty(), t.getDiscountAmount(), t.getItemTotal() });
+        }
+
+        int[] counts = CrudUtil.executeBatch("INSERT INTO sale_items (sale_id, item_id, qty, discount_amount, item_total) " +
+           "VALUES (?, ?, ?, ?, ?)", batchArgs);
+
+        for (int count : counts) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public SaleItem get(Long id) throws Exception {  
-            ResultSet rs = CrudUtil.executeQuery("SELECT * FROM sale_items WHERE sale_item_id=?", id);
-            if (rs.next()) {
-                return mapResultSetToSaleItem(rs);
-            } 
-        return null;
+        return CrudUtil.queryOne("SELECT * FROM sale_items WHERE sale_item_id=?", this::mapResultSetToSaleItem, id);
     }
 
 
     @Override
     public List<SaleItem> getItemsBySale(Sale sale) throws Exception {
-        List<SaleItem> list = new ArrayList<>(); 
-            ResultSet rs = CrudUtil.executeQuery("SELECT * FROM sale_items WHERE sale_id=?",sale.getSaleId());
-            while (rs.next()) {
-                list.add(mapResultSetToSaleItem(rs));
-            }
-        
-        return list;
+        return CrudUtil.query("SELECT * FROM sale_items WHERE sale_id=?", this::mapResultSetToSaleItem, sale.getSaleId());
     }
 
-    private SaleItem mapResultSetToSaleItem(ResultSet rs) throws Exception {
+    private SaleItem mapResultSetToSaleItem(ResultSet rs) throws SQLException {
         SaleItem si = new SaleItem();
         si.setSaleItemId(rs.getLong("sale_item_id"));
  
@@ -0,0 +1,20 @@
+package com.pahanaedu.dao.custom;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.pahanaedu.dao.SuperDao;
+import com.pahanaedu.dto.DailySales;
+import com.pahanaedu.model.Sale;
+import com.pahanaedu.model.SaleItem;
+
+// sales_daily_rollup; not a CrudDao, as rows are only ever added to or rebuilt, never edited one by one
+public interface SalesRollupDao extends SuperDao {
+    boolean recordSale(Sale sale, List<SaleItem> saleItems) throws Exception;
+
+    List<DailySales> getDaily(LocalDate from, LocalDate to, Long categoryId) throws Exception;
+
+    List<DailySales> getCategoryTotals(LocalDate from, LocalDate to) throws Exception;
+
+    boolean rebuild(LocalDate from, LocalDate to) throws Exception;
+}
@@ -0,0 +1,138 @@
+package com.pahanaedu.dao.custom;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.pahanaedu.dao.CrudUtil;
+import com.pahanaedu.dto.DailySales;
+import com.pahanaedu.model.Sale;
+import com.pahanaedu.model.SaleItem;
+
+public class SalesRollupDaoImpl implements SalesRollupDao {
+
+    // The whole day's row; category rows use the category's id
+    public static final long ALL_CATEGORIES = 0;
+
+    // The date comes from the sale row, so the rollup agrees with sales.sale_date whatever the JVM's clock says
+    private static final String ADD_TO_DAY =
+        "INSERT INTO sales_daily_rollup (sale_date, category_id, revenue, discount, sale_count, units) " +
+        "SELECT sale_date, ?, ?, ?, 1, ? FROM sales WHERE sale_id = ? " +
+        "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), discount = discount + VALUES(discount), " +
+        "sale_count = sale_count + VALUES(sale_count), units = units + VALUES(units)";
+
+    private static final String REBUILD_DAYS = """
+        INSERT INTO sales_daily_rollup (sale_date, category_id, revenue, discount, sale_count, units)
+        SELECT s.sale_date, 0, SUM(s.total_amount), SUM(s.total_discount), COUNT(*), COALESCE(SUM(l.units), 0)
+        FROM sales s
+        LEFT JOIN (SELECT sale_id, SUM(qty) AS units FROM sale_items GROUP BY sale_id) l ON l.sale_id = s.sale_id
+        WHERE s.sale_date BETWEEN ? AND ?
+        GROUP BY s.sale_date
+        """;
+
+    private static final String REBUILD_CATEGORIES = """
+        INSERT INTO sales_daily_rollup (sale_date, category_id, revenue, discount, sale_count, units)
+        SELECT s.sale_date, i.category_id, SUM(si.item_total), SUM(si.discount_amount * si.qty),
+               COUNT(DISTINCT s.sale_id), SUM(si.qty)
+        FROM sales s
+        JOIN sale_items si ON si.sale_id = s.sale_id
+        JOIN item i ON i.item_id = si.item_id
+        WHERE s.sale_date BETWEEN ? AND ?
+        GROUP BY s.sale_date, i.category_id
+        """;
+
+    /**
+     * Adds a sale to its day's row and to the row of each category it sold from. Meant to run inside the sale's
+     * transaction, after the sale row is written.
+     *
+     * The rows are written in (date, category) order, so two sales committing together lock them in the same order
+     * and cannot deadlock each other. saleItems must carry their Item, as SaleService leaves them.
+     */
+    @Override
+    public boolean recordSale(Sale sale, List<SaleItem> saleItems) throws Exception {
+        int units = 0;
+        Map<Long, DailySales> byCategory = new TreeMap<>();
+        for (SaleItem si : saleItems) {
+            units += si.getQty();
+            DailySales category = byCategory.computeIfAbsent(si.getItem().getCategoryId(), id -> DailySales.empty(null, id));
+            category.setRevenue(category.getRevenue() + si.getItemTotal());
+            category.setDiscount(category.getDiscount() + si.getDiscountAmount() * si.getQty());
+            category.setUnits(category.getUnits() + si.getQty());
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        batchArgs.add(new Object[] { ALL_CATEGORIES, sale.getTotalAmount(), sale.getTotalDiscount(), units, sale.getSaleId() });
+        for (DailySales category : byCategory.values()) {
+            batchArgs.add(new Object[] {
+                category.getCategoryId(), category.getRevenue(), category.getDiscount(), category.getUnits(), sale.getSaleId()
+            });
+        }
+
+        int[] counts = CrudUtil.executeBatch(ADD_TO_DAY, batchArgs);
+        for (int count : counts) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Days with no sales are absent; categoryId null means the whole-day rows
+    @Override
+    public List<DailySales> getDaily(LocalDate from, LocalDate to, Long categoryId) throws Exception {
+        return CrudUtil.query(
+            "SELECT * FROM sales_daily_rollup WHERE category_id = ? AND sale_date BETWEEN ? AND ? ORDER BY sale_date",
+            this::mapResultSetToDailySales,
+            categoryId != null ? categoryId : ALL_CATEGORIES, Date.valueOf(from), Date.valueOf(to)
+        );
+    }
+
+    // One row per category over the range, best selling first; sale_count adds up per day, so a customer
+    // buying from a category on two days counts twice
+    @Override
+    public List<DailySales> getCategoryTotals(LocalDate from, LocalDate to) throws Exception {
+        return CrudUtil.query(
+            "SELECT category_id, SUM(revenue) AS revenue, SUM(discount) AS discount, " +
+            "SUM(sale_count) AS sale_count, SUM(units) AS units " +
+            "FROM sales_daily_rollup WHERE category_id <> ? AND sale_date BETWEEN ? AND ? " +
+            "GROUP BY category_id ORDER BY revenue DESC",
+            rs -> {
+                DailySales totals = DailySales.empty(null, rs.getLong("category_id"));
+                mapTotals(rs, totals);
+                return totals;
+            },
+            ALL_CATEGORIES, Date.valueOf(from), Date.valueOf(to)
+        );
+    }
+
+    // Recomputes the range from the sales themselves; the caller runs it in a transaction
+    @Override
+    public boolean rebuild(LocalDate from, LocalDate to) throws Exception {
+        Date fromDate = Date.valueOf(from);
+        Date toDate = Date.valueOf(to);
+        CrudUtil.executeUpdate("DELETE FROM sales_daily_rollup WHERE sale_date BETWEEN ? AND ?", fromDate, toDate);
+        CrudUtil.executeUpdate(REBUILD_DAYS, fromDate, toDate);
+        CrudUtil.executeUpdate(REBUILD_CATEGORIES, fromDate, toDate);
+        return true;
+    }
+
+    private DailySales mapResultSetToDailySales(ResultSet rs) throws SQLException {
+        long categoryId = rs.getLong("category_id");
+        DailySales day = DailySales.empty(rs.getDate("sale_date").toLocalDate(),
+                categoryId == ALL_CATEGORIES ? null : categoryId);
+        mapTotals(rs, day);
+        return day;
+    }
+
+    private void mapTotals(ResultSet rs, DailySales totals) throws SQLException {
+        totals.setRevenue(rs.getDouble("revenue"));
+        totals.setDiscount(rs.getDouble("discount"));
+        totals.setSaleCount(rs.getInt("sale_count"));
+        totals.setUnits(rs.getInt("units"));
+    }
+}
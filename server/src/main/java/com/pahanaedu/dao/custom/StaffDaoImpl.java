@@ -53,11 +53,7 @@ public class StaffDaoImpl implements StaffDao {
 
     @Override
     public Staff get(Long id) throws Exception {
-        ResultSet rs = CrudUtil.executeQuery("SELECT * FROM staff WHERE id=?", id);
-        if (rs.next()) {
-            return mapResultSetToStaff(rs);
-        }
-        return null;
+        return CrudUtil.queryOne("SELECT * FROM staff WHERE id=?", this::mapResultSetToStaff, id);
     }
 
     @Override
@@ -68,18 +64,12 @@ public class StaffDaoImpl implements StaffDao {
 
  
     public List<Staff> getAllStaff() throws Exception {
-    	List<Staff> staffList = new java.util.ArrayList<>();
-
         // Select all staff including password, because mapResultSetToStaff expects it
-        ResultSet rs = CrudUtil.executeQuery("SELECT * FROM staff");
-
-        while (rs.next()) {
+        return CrudUtil.query("SELECT * FROM staff", rs -> {
             Staff staff = mapResultSetToStaff(rs);
             staff.setPassword(null); // remove password for safety
-            staffList.add(staff);
-        }
-
-        return staffList;
+            return staff;
+        });
     }
 
     
@@ -87,11 +77,7 @@ public class StaffDaoImpl implements StaffDao {
     @Override
     public Staff getStaffByUserName(String username) throws Exception {
 
-        ResultSet rs = CrudUtil.executeQuery("SELECT * FROM staff WHERE username=?", username);
-        if (rs.next()) {
-            return mapResultSetToStaff(rs);
-        }
-        return null;
+        return CrudUtil.queryOne("SELECT * FROM staff WHERE username=?", this::mapResultSetToStaff, username);
     }
  
 
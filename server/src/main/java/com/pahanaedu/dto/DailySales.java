@@ -0,0 +1,67 @@
+package com.pahanaedu.dto;
+
+import java.time.LocalDate;
+
+// One row of sales_daily_rollup, or a sum of them: a day's totals, a category's totals over a range, or both
+public class DailySales {
+	private LocalDate saleDate;
+	private Long categoryId;
+	private String categoryName;
+	private double revenue;
+	private double discount;
+	private int saleCount;
+	private int units;
+
+	public DailySales() {
+	}
+
+	public static DailySales empty(LocalDate saleDate, Long categoryId) {
+		DailySales day = new DailySales();
+		day.setSaleDate(saleDate);
+		day.setCategoryId(categoryId);
+		return day;
+	}
+
+	public LocalDate getSaleDate() {
+		return saleDate;
+	}
+	public void setSaleDate(LocalDate saleDate) {
+		this.saleDate = saleDate;
+	}
+	public Long getCategoryId() {
+		return categoryId;
+	}
+	public void setCategoryId(Long categoryId) {
+		this.categoryId = categoryId;
+	}
+	public String getCategoryName() {
+		return categoryName;
+	}
+	public void setCategoryName(String categoryName) {
+		this.categoryName = categoryName;
+	}
+	public double getRevenue() {
+		return revenue;
+	}
+	public void setRevenue(double revenue) {
+		this.revenue = revenue;
+	}
+	public double getDiscount() {
+		return discount;
+	}
+	public void setDiscount(double discount) {
+		this.discount = discount;
+	}
+	public int getSaleCount() {
+		return saleCount;
+	}
+	public void setSaleCount(int saleCount) {
+		this.saleCount = saleCount;
+	}
+	public int getUnits() {
+		return units;
+	}
+	public void setUnits(int units) {
+		this.units = units;
+	}
+}
@@ -0,0 +1,54 @@
+package com.pahanaedu.dto;
+
+import com.pahanaedu.model.Item;
+
+// One typeahead match: just what the billing screen shows while picking an item
+public class ItemSuggestion {
+	private long itemId;
+	private String name;
+	private Long categoryId;
+	private Double unitPrice;
+	private Integer stockAvailable;
+
+	public ItemSuggestion() {
+	}
+
+	public ItemSuggestion(Item item) {
+		this.itemId = item.getItemId();
+		this.name = item.getName();
+		this.categoryId = item.getCategoryId();
+		this.unitPrice = item.getUnitPrice();
+		this.stockAvailable = item.getStockAvailable();
+	}
+
+	public long getItemId() {
+		return itemId;
+	}
+	public void setItemId(long itemId) {
+		this.itemId = itemId;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public Long getCategoryId() {
+		return categoryId;
+	}
+	public void setCategoryId(Long categoryId) {
+		this.categoryId = categoryId;
+	}
+	public Double getUnitPrice() {
+		return unitPrice;
+	}
+	public void setUnitPrice(Double unitPrice) {
+		this.unitPrice = unitPrice;
+	}
+	public Integer getStockAvailable() {
+		return stockAvailable;
+	}
+	public void setStockAvailable(Integer stockAvailable) {
+		this.stockAvailable = stockAvailable;
+	}
+}
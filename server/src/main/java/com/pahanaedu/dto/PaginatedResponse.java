@@ -6,12 +6,21 @@ public class PaginatedResponse<T> {
     private List<T> data;
     private int totalPages;
     private int totalCount;
+    // Token for ?after= that continues after the last row here; null on the last page
+    private String nextCursor;
+    // False when totalCount is the database's estimate rather than a real count
+    private boolean totalExact = true;
 
     public PaginatedResponse(List<T> data, int totalPages, int totalCount) {
         this.data = data;
         this.totalPages = totalPages;
         this.totalCount = totalCount;
     }
+
+    public PaginatedResponse(List<T> data, int totalPages, int totalCount, String nextCursor) {
+        this(data, totalPages, totalCount);
+        this.nextCursor = nextCursor;
+    }
     
 
 
@@ -28,6 +37,14 @@ public class PaginatedResponse<T> {
         return totalCount;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
     // Optional: setters if needed
     public void setData(List<T> data) {
         this.data = data;
@@ -40,6 +57,14 @@ public class PaginatedResponse<T> {
     public void setTotalCount(int totalCount) {
         this.totalCount = totalCount;
     }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public void setTotalExact(boolean totalExact) {
+        this.totalExact = totalExact;
+    }
  
 }
 
@@ -0,0 +1,15 @@
+package com.pahanaedu.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Comparator;
+
+// Just enough of a sale to order and page search candidates before any details are fetched
+public record SaleKey(long saleId, LocalDate saleDate, LocalTime saleTime) {
+
+	// The order every sale list uses: newest first, sale id breaking ties
+	public static final Comparator<SaleKey> NEWEST_FIRST = Comparator.comparing(SaleKey::saleDate)
+			.thenComparing(SaleKey::saleTime)
+			.thenComparingLong(SaleKey::saleId)
+			.reversed();
+}
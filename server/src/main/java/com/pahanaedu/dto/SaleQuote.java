@@ -0,0 +1,113 @@
+package com.pahanaedu.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// What a cart would cost, line by line, as PricingEngine prices it; nothing is saved
+public class SaleQuote {
+	private List<Line> lines = new ArrayList<>();
+	private double subTotal;
+	private double totalDiscount;
+	private double totalAmount;
+	private double paid;
+	private double balance;
+	// Items whose cart quantity is more than the stock last seen for them
+	private List<Long> insufficientStock = new ArrayList<>();
+
+	// One cart line: the per-unit discount applies only once the line reaches the item's discount quantity
+	public static class Line {
+		private long itemId;
+		private String name;
+		private int qty;
+		private double unitPrice;
+		private double discountAmount;
+		private double lineDiscount;
+		private double itemTotal;
+
+		public long getItemId() {
+			return itemId;
+		}
+		public void setItemId(long itemId) {
+			this.itemId = itemId;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public int getQty() {
+			return qty;
+		}
+		public void setQty(int qty) {
+			this.qty = qty;
+		}
+		public double getUnitPrice() {
+			return unitPrice;
+		}
+		public void setUnitPrice(double unitPrice) {
+			this.unitPrice = unitPrice;
+		}
+		public double getDiscountAmount() {
+			return discountAmount;
+		}
+		public void setDiscountAmount(double discountAmount) {
+			this.discountAmount = discountAmount;
+		}
+		public double getLineDiscount() {
+			return lineDiscount;
+		}
+		public void setLineDiscount(double lineDiscount) {
+			this.lineDiscount = lineDiscount;
+		}
+		public double getItemTotal() {
+			return itemTotal;
+		}
+		public void setItemTotal(double itemTotal) {
+			this.itemTotal = itemTotal;
+		}
+	}
+
+	public List<Line> getLines() {
+		return lines;
+	}
+	public void setLines(List<Line> lines) {
+		this.lines = lines;
+	}
+	public double getSubTotal() {
+		return subTotal;
+	}
+	public void setSubTotal(double subTotal) {
+		this.subTotal = subTotal;
+	}
+	public double getTotalDiscount() {
+		return totalDiscount;
+	}
+	public void setTotalDiscount(double totalDiscount) {
+		this.totalDiscount = totalDiscount;
+	}
+	public double getTotalAmount() {
+		return totalAmount;
+	}
+	public void setTotalAmount(double totalAmount) {
+		this.totalAmount = totalAmount;
+	}
+	public double getPaid() {
+		return paid;
+	}
+	public void setPaid(double paid) {
+		this.paid = paid;
+	}
+	public double getBalance() {
+		return balance;
+	}
+	public void setBalance(double balance) {
+		this.balance = balance;
+	}
+	public List<Long> getInsufficientStock() {
+		return insufficientStock;
+	}
+	public void setInsufficientStock(List<Long> insufficientStock) {
+		this.insufficientStock = insufficientStock;
+	}
+}
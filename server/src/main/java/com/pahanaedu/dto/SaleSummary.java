@@ -0,0 +1,107 @@
+package com.pahanaedu.dto;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import com.pahanaedu.model.Sale;
+
+// Header-only view of a sale for list screens; the lines themselves come from /api/sales/{id} or ?expand=items
+public class SaleSummary {
+	private Long saleId;
+	private Long customerId;
+	private String customerName;
+	private Double totalAmount;
+	private Double totalDiscount;
+	private Double subTotal;
+	private Double paid;
+	private Double balance;
+	private LocalDate saleDate;
+	private LocalTime saleTime;
+	private int lineCount;
+
+	public SaleSummary() {
+	}
+
+	public static SaleSummary of(Sale sale) {
+		SaleSummary summary = new SaleSummary();
+		summary.setSaleId(sale.getSaleId());
+		summary.setCustomerId(sale.getCustomerId());
+		summary.setCustomerName(sale.getCustomerName());
+		summary.setTotalAmount(sale.getTotalAmount());
+		summary.setTotalDiscount(sale.getTotalDiscount());
+		summary.setSubTotal(sale.getSubTotal());
+		summary.setPaid(sale.getPaid());
+		summary.setBalance(sale.getBalance());
+		summary.setSaleDate(sale.getSaleDate());
+		summary.setSaleTime(sale.getSaleTime());
+		summary.setLineCount(sale.getSaleItems() != null ? sale.getSaleItems().size() : 0);
+		return summary;
+	}
+
+	public Long getSaleId() {
+		return saleId;
+	}
+	public void setSaleId(Long saleId) {
+		this.saleId = saleId;
+	}
+	public Long getCustomerId() {
+		return customerId;
+	}
+	public void setCustomerId(Long customerId) {
+		this.customerId = customerId;
+	}
+	public String getCustomerName() {
+		return customerName;
+	}
+	public void setCustomerName(String customerName) {
+		this.customerName = customerName;
+	}
+	public Double getTotalAmount() {
+		return totalAmount;
+	}
+	public void setTotalAmount(Double totalAmount) {
+		this.totalAmount = totalAmount;
+	}
+	public Double getTotalDiscount() {
+		return totalDiscount;
+	}
+	public void setTotalDiscount(Double totalDiscount) {
+		this.totalDiscount = totalDiscount;
+	}
+	public Double getSubTotal() {
+		return subTotal;
+	}
+	public void setSubTotal(Double subTotal) {
+		this.subTotal = subTotal;
+	}
+	public Double getPaid() {
+		return paid;
+	}
+	public void setPaid(Double paid) {
+		this.paid = paid;
+	}
+	public Double getBalance() {
+		return balance;
+	}
+	public void setBalance(Double balance) {
+		this.balance = balance;
+	}
+	public LocalDate getSaleDate() {
+		return saleDate;
+	}
+	public void setSaleDate(LocalDate saleDate) {
+		this.saleDate = saleDate;
+	}
+	public LocalTime getSaleTime() {
+		return saleTime;
+	}
+	public void setSaleTime(LocalTime saleTime) {
+		this.saleTime = saleTime;
+	}
+	public int getLineCount() {
+		return lineCount;
+	}
+	public void setLineCount(int lineCount) {
+		this.lineCount = lineCount;
+	}
+}
@@ -0,0 +1,57 @@
+package com.pahanaedu.dto;
+
+// One entry of a best-seller list: an item (with its category) or a category, and what it sold over the range
+public class SalesRank {
+	private long id;
+	private String name;
+	private Long categoryId;
+	private String categoryName;
+	private long units;
+	private double revenue;
+
+	public SalesRank() {
+	}
+
+	public SalesRank(long id, long units, double revenue) {
+		this.id = id;
+		this.units = units;
+		this.revenue = revenue;
+	}
+
+	public long getId() {
+		return id;
+	}
+	public void setId(long id) {
+		this.id = id;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public Long getCategoryId() {
+		return categoryId;
+	}
+	public void setCategoryId(Long categoryId) {
+		this.categoryId = categoryId;
+	}
+	public String getCategoryName() {
+		return categoryName;
+	}
+	public void setCategoryName(String categoryName) {
+		this.categoryName = categoryName;
+	}
+	public long getUnits() {
+		return units;
+	}
+	public void setUnits(long units) {
+		this.units = units;
+	}
+	public double getRevenue() {
+		return revenue;
+	}
+	public void setRevenue(double revenue) {
+		this.revenue = revenue;
+	}
+}
@@ -0,0 +1,62 @@
+package com.pahanaedu.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Sales totals per time bucket, one array per measure so a chart can plot them as they are
+public class TimeSeries {
+	private String granularity;
+	private LocalDate from;
+	private LocalDate to;
+	// ISO start of each bucket: 2025-08-21T14:00, 2025-08-21 or 2025-08
+	private List<String> buckets;
+	private double[] revenue;
+	private int[] saleCount;
+	private int[] units;
+
+	public TimeSeries() {
+	}
+
+	public String getGranularity() {
+		return granularity;
+	}
+	public void setGranularity(String granularity) {
+		this.granularity = granularity;
+	}
+	public LocalDate getFrom() {
+		return from;
+	}
+	public void setFrom(LocalDate from) {
+		this.from = from;
+	}
+	public LocalDate getTo() {
+		return to;
+	}
+	public void setTo(LocalDate to) {
+		this.to = to;
+	}
+	public List<String> getBuckets() {
+		return buckets;
+	}
+	public void setBuckets(List<String> buckets) {
+		this.buckets = buckets;
+	}
+	public double[] getRevenue() {
+		return revenue;
+	}
+	public void setRevenue(double[] revenue) {
+		this.revenue = revenue;
+	}
+	public int[] getSaleCount() {
+		return saleCount;
+	}
+	public void setSaleCount(int[] saleCount) {
+		this.saleCount = saleCount;
+	}
+	public int[] getUnits() {
+		return units;
+	}
+	public void setUnits(int[] units) {
+		this.units = units;
+	}
+}
@@ -5,7 +5,7 @@ import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
-@WebFilter("/*")  // applies to ALL requests
+@WebFilter(urlPatterns = "/*", asyncSupported = true)  // applies to ALL requests; async so LoginServlet can suspend
 public class CORSFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -15,7 +15,9 @@ public class CORSFilter implements Filter {
 
         resp.setHeader("Access-Control-Allow-Origin", "*");
         resp.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        resp.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        resp.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, If-None-Match, If-Modified-Since");
+        // Let the UI read the validators it revalidates with
+        resp.setHeader("Access-Control-Expose-Headers", "ETag, Last-Modified, Retry-After, X-Category-Version");
         resp.setHeader("Access-Control-Allow-Credentials", "true");
 
         chain.doFilter(request, response);
@@ -0,0 +1,84 @@
+package com.pahanaedu.listener;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import com.pahanaedu.service.AnalyticsService;
+import com.pahanaedu.service.CustomerService;
+import com.pahanaedu.service.DashboardStatsService;
+import com.pahanaedu.service.ItemService;
+import com.pahanaedu.service.LoginVerificationService;
+import com.pahanaedu.service.SalesRankingService;
+import com.pahanaedu.util.DBConnection;
+import com.pahanaedu.util.SchemaMigrator;
+
+@WebListener
+public class AppContextListener implements ServletContextListener {
+    private static final Logger logger = Logger.getLogger(AppContextListener.class.getName());
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Bring the schema (tables, indexes) up to date before the first request; -Dpahanaedu.db.migrate=false skips
+        // that but still checks every migration was applied. Either failing stops the webapp from starting, as
+        // checkout writes to tables the migrations create.
+        SchemaMigrator migrator = new SchemaMigrator(DBConnection.getInstance().getDataSource());
+        try {
+            if (Boolean.parseBoolean(System.getProperty("pahanaedu.db.migrate", "true"))) {
+                migrator.migrate();
+            } else {
+                migrator.verify();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Schema is not up to date; refusing to start", e);
+            throw new IllegalStateException("Schema is not up to date", e);
+        }
+
+        // Full-reload mode for the item cache: -Dpahanaedu.cache.items.preload=true loads the whole catalog up front
+        if (Boolean.getBoolean("pahanaedu.cache.items.preload")) {
+            try {
+                if (!new ItemService().reloadCatalogCache()) {
+                    logger.warning("Item catalog is larger than the item cache; items will be cached as they are read");
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not preload the item cache", e);
+            }
+        }
+
+        // Item names for /api/items/suggest; if this fails, the first suggestion request builds it instead
+        try {
+            new ItemService().buildSearchIndex();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not build the item search index", e);
+        }
+
+        // Customers for /api/customers/suggest; if this fails, the first lookup loads them instead
+        try {
+            new CustomerService().loadDirectory();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not load the customer directory", e);
+        }
+
+        // Loads the dashboard counters in the background and reconciles them from then on
+        DashboardStatsService.getInstance().start();
+
+        // Hourly sales history for /api/analytics/timeseries; if this fails, the first request loads it instead
+        try {
+            new AnalyticsService().seedTimeSeries();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not load the sales time series", e);
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        LoginVerificationService.getInstance().shutdown();
+        DashboardStatsService.getInstance().shutdown();
+        SalesRankingService.getInstance().shutdown();
+        // Release pooled sockets so a redeploy does not leave connections behind
+        DBConnection.shutdown();
+    }
+}
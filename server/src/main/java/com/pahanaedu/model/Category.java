@@ -15,6 +15,12 @@ public class Category {
     	this.name = name;
     } 
 
+    public Category(Category other) {
+    	this.categoryId = other.categoryId;
+    	this.name = other.name;
+    	this.lastUpdatedAt = other.lastUpdatedAt;
+    }
+
 	public Long getCategoryId() {
 		return categoryId;
 	}
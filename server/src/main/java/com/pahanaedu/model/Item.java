@@ -14,6 +14,21 @@ public class Item {
 //    @ManyToOne
     private Long categoryId;
     
+    public Item() {
+    }
+
+    // Field-by-field copy, so cached items can be handed out without sharing state
+    public Item(Item other) {
+    	this.itemId = other.itemId;
+    	this.name = other.name;
+    	this.unitPrice = other.unitPrice;
+    	this.stockAvailable = other.stockAvailable;
+    	this.discount = other.discount;
+    	this.qtyToAllowDiscount = other.qtyToAllowDiscount;
+    	this.lastUpdatedAt = other.lastUpdatedAt;
+    	this.categoryId = other.categoryId;
+    }
+
     public Long getItemId() {
     	return itemId;
     };
@@ -1,22 +1,183 @@
 package com.pahanaedu.service;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+import com.pahanaedu.cache.ExpiringCache;
+import com.pahanaedu.cache.SalesTimeSeries;
 import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.TransactionManager;
 import com.pahanaedu.dao.custom.AnalyticsDaoImpl;
+import com.pahanaedu.dao.custom.CategoryDaoImpl;
+import com.pahanaedu.dao.custom.SalesRollupDaoImpl;
+import com.pahanaedu.dto.DailySales;
+import com.pahanaedu.dto.SalesRank;
+import com.pahanaedu.dto.TimeSeries;
+import com.pahanaedu.model.Category;
+import com.pahanaedu.util.SingleFlight;
 
 public class AnalyticsService {
 
-    private final AnalyticsDaoImpl analyticsDao = 
+    // Longest range a rollup query may cover; two years of days is still a small read
+    public static final int MAX_RANGE_DAYS = 731;
+    public static final int MAX_TOP_ITEMS = 100;
+
+    private static final Object SEED_LOCK = new Object();
+
+    // Rollup reads are shared: identical requests in flight run once, and the answer is reused for a few seconds
+    private static final long RESULT_TTL_MS = 5_000;
+    private static final ExpiringCache<String, Object> results = new ExpiringCache<>(RESULT_TTL_MS, 256);
+    private static final SingleFlight<String, Object> flights = new SingleFlight<>();
+
+    // Both are answered from in-memory counters; see DashboardStatsService
+    private final DashboardStatsService dashboardStats = DashboardStatsService.getInstance();
+    private final SalesRollupDaoImpl salesRollupDao =
+        (SalesRollupDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.SALES_ROLLUP);
+    private final AnalyticsDaoImpl analyticsDao =
         (AnalyticsDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ANALYTICS);
+    private final CategoryDaoImpl categoryDao =
+        (CategoryDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.CATEGORY);
 
     public Map<String, Object> getDashboardStats() throws Exception {
-        return analyticsDao.getDashboardStats();
+        return dashboardStats.getDashboardStats();
     }
     
 
     public Map<String, Object> getItemAnalytics() throws Exception {
-        return analyticsDao.getItemAnalytics();
+        return dashboardStats.getItemStats();
+    }
+
+    // Rollup analytics: these read sales_daily_rollup only, so their cost follows the number of days
+
+    // Every day of the range, oldest first, with zeros for days without sales; categoryId narrows it to one category
+    public List<DailySales> getDailySales(LocalDate from, LocalDate to, Long categoryId) throws Exception {
+        checkRange(from, to);
+        return shared("daily:" + from + ".." + to + ":" + categoryId, () -> loadDailySales(from, to, categoryId));
+    }
+
+    private List<DailySales> loadDailySales(LocalDate from, LocalDate to, Long categoryId) throws Exception {
+        Map<LocalDate, DailySales> byDate = new HashMap<>();
+        for (DailySales day : salesRollupDao.getDaily(from, to, categoryId)) {
+            byDate.put(day.getSaleDate(), day);
+        }
+        List<DailySales> days = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            DailySales day = byDate.get(date);
+            days.add(day != null ? day : DailySales.empty(date, categoryId));
+        }
+        return days;
+    }
+
+    public List<DailySales> getCategorySales(LocalDate from, LocalDate to) throws Exception {
+        checkRange(from, to);
+        return shared("categories:" + from + ".." + to, () -> loadCategorySales(from, to));
+    }
+
+    private List<DailySales> loadCategorySales(LocalDate from, LocalDate to) throws Exception {
+        List<DailySales> totals = salesRollupDao.getCategoryTotals(from, to);
+        for (DailySales category : totals) {
+            Category named = categoryDao.get(category.getCategoryId());
+            category.setCategoryName(named != null ? named.getName() : null);
+        }
+        return totals;
+    }
+
+    // Best sellers over a range, summed from the sale lines; see SalesRankingService
+    public List<SalesRank> getTopItems(LocalDate from, LocalDate to, int limit, boolean byUnits) throws Exception {
+        checkRange(from, to);
+        if (limit < 1 || limit > MAX_TOP_ITEMS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP_ITEMS);
+        }
+        return SalesRankingService.getInstance().getTopItems(from, to, limit, byUnits);
+    }
+
+    public List<SalesRank> getTopCategories(LocalDate from, LocalDate to, boolean byUnits) throws Exception {
+        checkRange(from, to);
+        return SalesRankingService.getInstance().getTopCategories(from, to, byUnits);
+    }
+
+    /**
+     * Recomputes the rollup for a range of closed days from the sales themselves, for history that predates the
+     * rollup or was changed by hand. Today is refused: its sales are still being added to the rows being rebuilt.
+     */
+    public boolean rebuildDailySales(LocalDate from, LocalDate to) throws Exception {
+        checkRange(from, to);
+        if (!to.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Only days before today can be rebuilt");
+        }
+        return TransactionManager.inTransaction(() -> salesRollupDao.rebuild(from, to));
+    }
+
+    // Served from the in-memory SalesTimeSeries; loads its history first if startup did not manage to
+    public TimeSeries getTimeSeries(LocalDate from, LocalDate to, SalesTimeSeries.Granularity granularity) throws Exception {
+        if (!SalesTimeSeries.getInstance().isSeeded()) {
+            seedTimeSeries();
+        }
+        return SalesTimeSeries.getInstance().query(from, to, granularity);
+    }
+
+    // Loads the hourly sales history into SalesTimeSeries; one load at a time, and none once it is seeded
+    public void seedTimeSeries() throws Exception {
+        SalesTimeSeries series = SalesTimeSeries.getInstance();
+        synchronized (SEED_LOCK) {
+            if (series.isSeeded()) {
+                return;
+            }
+            SalesTimeSeries.Seed seed = series.beginSeed();
+            try {
+                TransactionManager.inReadOnlyTransaction(() -> {
+                    analyticsDao.loadHourlySales(series.seedFrom(), seed);
+                    // sales that committed meanwhile are looked up in the same snapshot, so each is counted once
+                    while (true) {
+                        List<Long> unchecked = series.uncheckedSales(seed);
+                        if (unchecked.isEmpty() && series.finishSeed(seed)) {
+                            return null;
+                        }
+                        seed.checked(unchecked, analyticsDao.getExistingSaleIds(unchecked));
+                    }
+                });
+            } catch (Exception e) {
+                series.abandonSeed();
+                throw e;
+            }
+        }
+    }
+
+    // The cached answer for key, or one load shared by every caller asking at the same time. Cached answers are
+    // handed to several requests, so callers must not change them.
+    @SuppressWarnings("unchecked")
+    private <T> T shared(String key, Callable<T> load) throws Exception {
+        Object cached = results.get(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        return (T) flights.execute(key, () -> {
+            T value = load.call();
+            results.put(key, value);
+            return value;
+        });
+    }
+
+    public static Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("results", results.getMetrics());
+        metrics.put("coalescing", flights.getMetrics());
+        return metrics;
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("Date range is limited to " + MAX_RANGE_DAYS + " days");
+        }
     }
 
 }
@@ -23,6 +23,11 @@ public class CategoryService {
         return categoryDAO.get(id);
     }
 
+    // Version of the category snapshot the reads are served from; it goes up on every change
+    public long getVersion() throws Exception {
+        return categoryDAO.getVersion();
+    }
+
     // Search by name
     public List<Category> searchByName(String name) throws Exception {
         return categoryDAO.searchByName(name);
@@ -2,12 +2,15 @@ package com.pahanaedu.service;
 
 import java.util.List;
 
+import com.pahanaedu.cache.CustomerDirectory;
 import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dao.custom.CustomerDaoImpl;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Customer;
 
 public class CustomerService {
+	  private static final Object LOAD_LOCK = new Object();
 	  private final CustomerDaoImpl customerDao;
 
 	    public CustomerService() {
@@ -18,11 +21,20 @@ public class CustomerService {
 	    public PaginatedResponse<Customer> getAll(int page) throws Exception {
 	        return customerDao.getAll(page);
 	    }
+
+	    public PaginatedResponse<Customer> getAll(PageCursor after) throws Exception {
+	        return customerDao.getAll(after);
+	    }
  
 	    public Customer get(Long id) throws Exception {
 	        return customerDao.get(id);
 	    }
  
+	    // Batch lookup for ?ids=, in request order
+	    public List<Customer> getByIds(List<Long> ids) throws Exception {
+	        return customerDao.getByIds(ids);
+	    }
+ 
 	    public List<Customer> getCustomersByName(String name, int pageNumber) throws Exception {
 	        return customerDao.getCustomersByName(name,pageNumber);
 	    }
@@ -35,6 +47,33 @@ public class CustomerService {
 	    	return customerDao.getCustomerByTelephone(name);
 	    }
 	    
+	    // Checkout lookup by partial telephone number or name, answered from CustomerDirectory
+	    public List<Customer> suggest(String query, int limit) throws Exception {
+	        CustomerDirectory directory = CustomerDirectory.getInstance();
+	        if (!directory.isLoaded()) {
+	            loadDirectory();
+	        }
+	        return directory.suggest(query, limit);
+	    }
+
+	    // Loads every customer into CustomerDirectory; one load at a time, and none once it is loaded
+	    public void loadDirectory() throws Exception {
+	        CustomerDirectory directory = CustomerDirectory.getInstance();
+	        synchronized (LOAD_LOCK) {
+	            if (directory.isLoaded()) {
+	                return;
+	            }
+	            CustomerDirectory.Build build = directory.beginLoad();
+	            try {
+	                customerDao.loadDirectory(build);
+	            } catch (Exception e) {
+	                directory.abandonLoad();
+	                throw e;
+	            }
+	            directory.finishLoad(build);
+	        }
+	    }
+	    
 	    // Create new customer (with duplicate check)
 	    public boolean create(Customer customer) throws Exception {
 	        if (customerDao.getCustomerByTelephone(customer.getTelephone())!= null) {
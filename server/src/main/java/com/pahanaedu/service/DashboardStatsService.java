@@ -0,0 +1,160 @@
+package com.pahanaedu.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.pahanaedu.cache.DashboardCounters;
+import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.custom.AnalyticsDaoImpl;
+import com.pahanaedu.util.LatencyHistogram;
+import com.pahanaedu.util.SingleFlight;
+
+/**
+ * Serves the dashboard figures from DashboardCounters and keeps them honest against the database.
+ *
+ * A background thread checks every few seconds whether the counters were marked dirty, and reconciles them then or
+ * once the reconcile interval (-Dpahanaedu.stats.reconcileMinutes, 10 by default) has passed. The first read after
+ * startup loads them itself if the thread has not got there yet; concurrent first reads share that one load.
+ */
+public class DashboardStatsService {
+
+    private static final Logger logger = Logger.getLogger(DashboardStatsService.class.getName());
+    private static final DashboardStatsService instance = new DashboardStatsService();
+
+    private static final long CHECK_SECONDS = 5;
+    private static final String RECONCILE = "reconcile";
+
+    private final AnalyticsDaoImpl analyticsDao =
+        (AnalyticsDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ANALYTICS);
+    private final DashboardCounters counters = DashboardCounters.getInstance();
+    private final long reconcileIntervalMillis =
+        TimeUnit.MINUTES.toMillis(Long.getLong("pahanaedu.stats.reconcileMinutes", 10));
+
+    private ScheduledExecutorService scheduler;
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram fanOutLatency = new LatencyHistogram();
+    private final LatencyHistogram reconcileLatency = new LatencyHistogram();
+    private final SingleFlight<String, Boolean> reconciles = new SingleFlight<>();
+
+    private DashboardStatsService() {
+    }
+
+    public static DashboardStatsService getInstance() {
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dashboard-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!counters.needsReconcile(reconcileIntervalMillis)) {
+                return;
+            }
+            try {
+                reconcile();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not reconcile the dashboard counters", e);
+            }
+        }, 0, CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public Map<String, Object> getDashboardStats() throws Exception {
+        ensureLoaded();
+        return counters.getDashboardStats(LocalDate.now());
+    }
+
+    public Map<String, Object> getItemStats() throws Exception {
+        ensureLoaded();
+        return counters.getItemStats();
+    }
+
+    private void ensureLoaded() throws Exception {
+        if (!counters.isLoaded()) {
+            reconcile();
+        }
+    }
+
+    // The scheduler and any number of cold first reads share whichever reconcile is already running
+    public void reconcile() throws Exception {
+        reconciles.execute(RECONCILE, () -> {
+            runReconcile();
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * The counters' queries are independent, each on its own table, so they run side by side on virtual threads
+     * (each with its own pooled connection) and the reconcile takes as long as the slowest of them.
+     */
+    private synchronized void runReconcile() throws Exception {
+        long startedAt = System.nanoTime();
+        counters.clearDirty();
+        // events applied from here on may already be in the totals read below, or may be overwritten by them
+        long eventsBefore = counters.eventCount();
+        LocalDate today = LocalDate.now();
+        try (ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Map<String, Number>> customers = fanOut.submit(analyticsDao::getCustomerTotals);
+            Future<Map<String, Number>> stock = fanOut.submit(
+                () -> analyticsDao.getStockTotals(DashboardCounters.stockBeforeCutoff(today)));
+            Future<Long> categories = fanOut.submit(analyticsDao::getCategoryCount);
+            Future<Map<LocalDate, Double>> salesByDay = fanOut.submit(() -> analyticsDao.getSalesByDay(today.minusMonths(1)));
+
+            Map<String, Number> totals = new HashMap<>(result(customers));
+            totals.putAll(result(stock));
+            totals.put("categories", result(categories));
+            Map<LocalDate, Double> days = result(salesByDay);
+            fanOutLatency.record(System.nanoTime() - startedAt);
+
+            counters.reconcile(totals, days, today, eventsBefore);
+        } catch (Exception e) {
+            failures.increment();
+            counters.markDirty();
+            throw e;
+        } finally {
+            reconcileLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    // A fanned-out query's result, or the exception it failed with
+    private static <T> T result(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(counters.getMetrics());
+        metrics.put("reconcileIntervalMillis", reconcileIntervalMillis);
+        metrics.put("failures", failures.sum());
+        metrics.put("reconcileCoalescing", reconciles.getMetrics());
+        metrics.put("fanOutLatency", fanOutLatency.toMap());
+        metrics.put("reconcileLatency", reconcileLatency.toMap());
+        return metrics;
+    }
+}
@@ -1,36 +1,115 @@
 package com.pahanaedu.service;
 
+import com.pahanaedu.cache.ItemSearchIndex;
 import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dao.TransactionManager;
 import com.pahanaedu.dao.custom.ItemDaoImpl;
+import com.pahanaedu.dto.ItemSuggestion;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Item;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ItemService {
 
+    private static final Object BUILD_LOCK = new Object();
+
     private final ItemDaoImpl itemDAO = (ItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ITEM);
 
     public PaginatedResponse<Item> getAll(int page) throws Exception{
         return itemDAO.getAll(page);
     }
 
+    public PaginatedResponse<Item> getAll(PageCursor after) throws Exception{
+        return itemDAO.getAll(after);
+    }
+
+    public PaginatedResponse<Item> searchByName(String name, PageCursor after, boolean exactCount) throws Exception{
+        return itemDAO.searchByName(name, after, exactCount);
+    }
+
+    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, PageCursor after, boolean exactCount) throws Exception{
+        return itemDAO.getItemsByCategoryId(categoryId, after, exactCount);
+    }
+
     public Item get(Long id)throws Exception {
         return itemDAO.get(id);
     }
 
-    public PaginatedResponse<Item> searchByName(String name, int page) throws Exception{
-        return itemDAO.searchByName(name, page);
+    // Batch lookup for ?ids=: cached items are used as they are and the rest come in one IN query; request order is kept
+    public List<Item> getByIds(List<Long> ids) throws Exception {
+        Map<Long, Item> byId = new HashMap<>();
+        for (Item item : itemDAO.getByIds(ids)) {
+            byId.put(item.getItemId(), item);
+        }
+        List<Item> items = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Item item = byId.get(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    public PaginatedResponse<Item> searchByName(String name, int page, boolean exactCount) throws Exception{
+        return itemDAO.searchByName(name, page, exactCount);
     }
 
-    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int page) throws Exception{
-        return itemDAO.getItemsByCategoryId(categoryId, page);
+    public PaginatedResponse<Item> getItemsByCategoryId(Long categoryId, int page, boolean exactCount) throws Exception{
+        return itemDAO.getItemsByCategoryId(categoryId, page, exactCount);
     }
 
     public List<Item> getLowStockItems(int threshold)throws Exception {
         return itemDAO.getLowStockItems(threshold);
     }
 
+    // Typeahead over item names from ItemSearchIndex; price and stock for the matches come from the item cache
+    public List<ItemSuggestion> suggest(String query, int limit) throws Exception {
+        ItemSearchIndex index = ItemSearchIndex.getInstance();
+        if (!index.isBuilt()) {
+            buildSearchIndex();
+        }
+        List<Long> ids = index.search(query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemDAO.getByIds(ids)) {
+            items.put(item.getItemId(), item);
+        }
+        List<ItemSuggestion> suggestions = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Item item = items.get(id);
+            if (item != null) {
+                suggestions.add(new ItemSuggestion(item));
+            }
+        }
+        return suggestions;
+    }
+
+    // Loads every item name into ItemSearchIndex; one build at a time, and none once it is built
+    public void buildSearchIndex() throws Exception {
+        ItemSearchIndex index = ItemSearchIndex.getInstance();
+        synchronized (BUILD_LOCK) {
+            if (index.isBuilt()) {
+                return;
+            }
+            ItemSearchIndex.Build build = index.beginBuild();
+            try {
+                itemDAO.loadNames(build);
+            } catch (Exception e) {
+                index.abandonBuild();
+                throw e;
+            }
+            index.finishBuild(build);
+        }
+    }
+
     public boolean create(Item item) throws Exception{
         if (itemDAO.existsByName(item.getName())) {
             throw new IllegalStateException("Item already exists");
@@ -42,12 +121,19 @@ public class ItemService {
         return itemDAO.update(item);
     }
 
+    // Details and received stock change together; the stock is added in place so concurrent sales are not overwritten
+    public boolean update(Item item, int restockQty) throws Exception{
+        return TransactionManager.inTransaction(() -> {
+            if (!itemDAO.update(item)) return false;
+            if (restockQty != 0) {
+                itemDAO.incrementStock(item.getItemId(), restockQty);
+            }
+            return true;
+        });
+    }
+
     public boolean updateStock(Long id, int stock)throws Exception {
-        Item item = itemDAO.get(id);
-        if (item == null) return false;
-        stock += item.getStockAvailable();
-        itemDAO.updateStock(id, stock);
-        return true;
+        return itemDAO.incrementStock(id, stock);
     }
 
     public boolean updateDiscount(Long id, double discount, int qty) throws Exception{
@@ -61,6 +147,11 @@ public class ItemService {
         return itemDAO.delete(id);
     }
 
+    // Warms the item cache with every item, for shops whose catalog fits in memory
+    public boolean reloadCatalogCache() throws Exception {
+        return itemDAO.reloadCache();
+    }
+
     public boolean existsByNameExcludingId(String name, Long excludeId) throws Exception{
         return itemDAO.existsByNameExcludingId(name, excludeId);
     }
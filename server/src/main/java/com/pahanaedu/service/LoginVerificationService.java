@@ -0,0 +1,102 @@
+package com.pahanaedu.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.dto.LoginDto;
+import com.pahanaedu.model.Staff;
+import com.pahanaedu.util.LatencyHistogram;
+
+/**
+ * Runs password checks on a small pool of its own, away from the request threads that serve billing.
+ *
+ * bcrypt is deliberately slow, so a shift change where every cashier logs in at once would otherwise tie up
+ * Tomcat's threads. The pool has a fixed number of threads and a bounded queue; when both are full a login is
+ * refused straight away (RejectedExecutionException) and the caller is expected to answer with Retry-After.
+ */
+public class LoginVerificationService {
+
+    private static final LoginVerificationService instance = new LoginVerificationService();
+
+    private final StaffService staffService = new StaffService();
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+
+    private LoginVerificationService() {
+        int threads = Integer.getInteger("pahanaedu.login.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        this.queueCapacity = Integer.getInteger("pahanaedu.login.queueSize", 32);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "login-verify-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static LoginVerificationService getInstance() {
+        return instance;
+    }
+
+    // The verified staff member, or null for a wrong username or password
+    public CompletableFuture<Staff> verify(LoginDto loginDto) {
+        long queuedAt = System.nanoTime();
+        try {
+            CompletableFuture<Staff> result = CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(startedAt - queuedAt);
+                try {
+                    return staffService.verifyPassword(loginDto);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    throw e;
+                } catch (Exception e) {
+                    failures.increment();
+                    throw new IllegalStateException(e.getMessage(), e);
+                } finally {
+                    verifyLatency.record(System.nanoTime() - startedAt);
+                }
+            }, executor);
+            submitted.increment();
+            return result;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", executor.getMaximumPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("submitted", submitted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("queueWait", queueWait.toMap());
+        metrics.put("verifyLatency", verifyLatency.toMap());
+        return metrics;
+    }
+}
@@ -0,0 +1,140 @@
+package com.pahanaedu.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.custom.ItemDaoImpl;
+import com.pahanaedu.dto.SaleQuote;
+import com.pahanaedu.model.Item;
+import com.pahanaedu.model.SaleItem;
+import com.pahanaedu.util.LatencyHistogram;
+
+/**
+ * Prices a cart: the one place line discounts and totals are worked out, for /api/sales/quote and for checkout alike.
+ *
+ * Prices and discounts are read through ItemDaoImpl.getByIds, which answers from ItemCache and only queries the
+ * items it has not seen (with -Dpahanaedu.cache.items.preload=true, none). ItemCache drops an item whenever it is
+ * written, so quotes follow price and discount changes. The arithmetic is done in whole cents:
+ * unit_price and discount are DECIMAL with two places, so this gives exactly what BigDecimal did, without
+ * allocating per line.
+ */
+public class PricingEngine {
+
+    private static final PricingEngine instance = new PricingEngine();
+
+    private final ItemDaoImpl itemDao = (ItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ITEM);
+
+    private final LongAdder quotes = new LongAdder();
+    private final LatencyHistogram quoteLatency = new LatencyHistogram();
+
+    private PricingEngine() {
+    }
+
+    public static PricingEngine getInstance() {
+        return instance;
+    }
+
+    // Prices the cart as it stands; nothing is reserved or saved
+    public SaleQuote quote(List<SaleItem> lines, double paid) throws Exception {
+        long startedAt = System.nanoTime();
+        quotes.increment();
+        try {
+            SaleQuote quote = price(lines, loadItems(lines));
+            quote.setPaid(paid);
+            quote.setBalance(paid - quote.getTotalAmount());
+            return quote;
+        } finally {
+            quoteLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    // Every item the cart mentions, fetched together
+    public Map<Long, Item> loadItems(List<SaleItem> lines) throws Exception {
+        Map<Long, Item> itemsById = new HashMap<>();
+        for (Item item : itemDao.getByIds(quantities(lines).keySet())) {
+            itemsById.put(item.getItemId(), item);
+        }
+        return itemsById;
+    }
+
+    /**
+     * Prices the cart against items already in hand. A line earns the item's per-unit discount once its own qty
+     * reaches the item's discount quantity. Stock is compared against each item's total qty across the cart.
+     */
+    public SaleQuote price(List<SaleItem> lines, Map<Long, Item> itemsById) {
+        SaleQuote quote = new SaleQuote();
+        long subTotalCents = 0;
+        long discountCents = 0;
+        for (SaleItem line : lines) {
+            Long itemId = itemIdOf(line);
+            Item item = itemsById.get(itemId);
+            if (item == null) {
+                throw new IllegalArgumentException("Item not found " + itemId);
+            }
+            int qty = line.getQty();
+            long priceCents = cents(item.getUnitPrice());
+            Integer discountQty = item.getQtyToAllowDiscount();
+            long unitDiscountCents = discountQty != null && qty >= discountQty ? cents(item.getDiscount()) : 0;
+
+            SaleQuote.Line priced = new SaleQuote.Line();
+            priced.setItemId(itemId);
+            priced.setName(item.getName());
+            priced.setQty(qty);
+            priced.setUnitPrice(priceCents / 100.0);
+            priced.setDiscountAmount(unitDiscountCents / 100.0);
+            priced.setLineDiscount(unitDiscountCents * qty / 100.0);
+            priced.setItemTotal((priceCents - unitDiscountCents) * qty / 100.0);
+            quote.getLines().add(priced);
+
+            subTotalCents += priceCents * qty;
+            discountCents += unitDiscountCents * qty;
+        }
+        quote.setSubTotal(subTotalCents / 100.0);
+        quote.setTotalDiscount(discountCents / 100.0);
+        quote.setTotalAmount((subTotalCents - discountCents) / 100.0);
+
+        for (Map.Entry<Long, Integer> wanted : quantities(lines).entrySet()) {
+            Integer stock = itemsById.get(wanted.getKey()).getStockAvailable();
+            if (stock == null || stock < wanted.getValue()) {
+                quote.getInsufficientStock().add(wanted.getKey());
+            }
+        }
+        return quote;
+    }
+
+    // Total qty per item, in cart order, for items that appear on several lines
+    public static Map<Long, Integer> quantities(List<SaleItem> lines) {
+        Map<Long, Integer> qtyByItemId = new LinkedHashMap<>();
+        for (SaleItem line : lines) {
+            if (line.getQty() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            qtyByItemId.merge(itemIdOf(line), line.getQty(), Integer::sum);
+        }
+        return qtyByItemId;
+    }
+
+    // Lines name their item either as {"item":{"itemId":..}} or as a bare itemId
+    private static Long itemIdOf(SaleItem line) {
+        Long itemId = line.getItem() != null ? line.getItem().getItemId() : line.getItemID();
+        if (itemId == null) {
+            throw new IllegalArgumentException("Item id is required on every line");
+        }
+        return itemId;
+    }
+
+    private static long cents(Double amount) {
+        return amount != null ? Math.round(amount * 100) : 0;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("quotes", quotes.sum());
+        metrics.put("quoteLatency", quoteLatency.toMap());
+        return metrics;
+    }
+}
@@ -0,0 +1,110 @@
+package com.pahanaedu.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.custom.SaleDaoImpl;
+import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.dto.SaleKey;
+import com.pahanaedu.model.Customer;
+
+/**
+ * The sales screen's free-text search: a query may be a sale id, the start of a customer's telephone number or
+ * part of a customer's name, and one result list covers every reading of it.
+ *
+ * The readings are resolved side by side on virtual threads, each down to bare sale keys (id, date, time): the sale
+ * id by primary key, the customers through CustomerDirectory and then their sales from the customer/date index. The
+ * keys are merged without duplicates, ordered newest first and paged, and only the page's sales are then fetched.
+ * At most 1000 candidate sales (from at most 200 customers) are considered; beyond that the total is marked inexact.
+ */
+public class SaleSearchService {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_CUSTOMERS = 200;
+    private static final int MAX_CANDIDATES = 1000;
+
+    private final SaleDaoImpl saleDao = (SaleDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.SALE);
+    private final CustomerService customerService = new CustomerService();
+
+    // One page of matching sales as SaleSummary rows, or whole sales when expandItems is set
+    public PaginatedResponse<?> search(String query, int page, boolean expandItems) throws Exception {
+        String text = query.trim();
+        Long saleId = asSaleId(text);
+
+        SaleKey idMatch;
+        List<SaleKey> customerMatches;
+        boolean truncated;
+        try (ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<SaleKey> byId = saleId != null ? fanOut.submit(() -> saleDao.getSaleKey(saleId)) : null;
+            Future<List<Customer>> customers = fanOut.submit(() -> customerService.suggest(text, MAX_CUSTOMERS));
+            Future<List<SaleKey>> byCustomer = fanOut.submit(() -> {
+                List<Long> customerIds = new ArrayList<>();
+                for (Customer customer : result(customers)) {
+                    customerIds.add(customer.getId());
+                }
+                // one past the cap, to tell a full list from a cut one
+                return saleDao.getSaleKeysByCustomers(customerIds, MAX_CANDIDATES + 1);
+            });
+
+            idMatch = byId != null ? result(byId) : null;
+            customerMatches = result(byCustomer);
+            truncated = result(customers).size() == MAX_CUSTOMERS || customerMatches.size() > MAX_CANDIDATES;
+        }
+
+        Map<Long, SaleKey> candidates = new LinkedHashMap<>();
+        if (idMatch != null) {
+            candidates.put(idMatch.saleId(), idMatch);
+        }
+        for (SaleKey key : customerMatches) {
+            candidates.putIfAbsent(key.saleId(), key);
+        }
+        List<SaleKey> ordered = new ArrayList<>(candidates.values());
+        ordered.sort(SaleKey.NEWEST_FIRST);
+        if (ordered.size() > MAX_CANDIDATES) {
+            ordered = ordered.subList(0, MAX_CANDIDATES);
+        }
+
+        int total = ordered.size();
+        int totalPages = (int) Math.ceil((double) total / PAGE_SIZE);
+        int from = Math.min(Math.max(page - 1, 0) * PAGE_SIZE, total);
+        List<Long> pageIds = new ArrayList<>();
+        for (SaleKey key : ordered.subList(from, Math.min(from + PAGE_SIZE, total))) {
+            pageIds.add(key.saleId());
+        }
+
+        PaginatedResponse<?> response = expandItems
+                ? new PaginatedResponse<>(saleDao.getByIds(pageIds), totalPages, total)
+                : new PaginatedResponse<>(saleDao.getSummariesByIds(pageIds), totalPages, total);
+        response.setTotalExact(!truncated);
+        return response;
+    }
+
+    // The query as a sale id when it is nothing but digits and fits one
+    private static Long asSaleId(String text) {
+        if (text.isEmpty() || text.length() > 18) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        return Long.parseLong(text);
+    }
+
+    // A fanned-out lookup's result, or the exception it failed with
+    private static <T> T result(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+}
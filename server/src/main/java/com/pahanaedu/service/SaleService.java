@@ -1,19 +1,23 @@
 package com.pahanaedu.service;
 
+import com.pahanaedu.cache.DashboardCounters;
+import com.pahanaedu.cache.SalesTimeSeries;
 import com.pahanaedu.dao.custom.SaleDaoImpl;
 import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.dto.SaleKey;
+import com.pahanaedu.dto.SaleQuote;
+import com.pahanaedu.dto.SaleSummary;
 import com.pahanaedu.model.Customer;
 import com.pahanaedu.model.Item;
 import com.pahanaedu.model.Sale;
 import com.pahanaedu.model.SaleItem;
-import com.pahanaedu.util.DBConnection;
 
-import java.math.BigDecimal;
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dao.TransactionManager;
 import com.pahanaedu.dao.custom.*;
 
 public class SaleService {
@@ -21,10 +25,13 @@ public class SaleService {
     private final SaleItemDaoImpl saleItemDAO = (SaleItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.SALEITEM);
     private final ItemDaoImpl itemDAO  = (ItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ITEM);
     private final CustomerDaoImpl customerDAO  = (CustomerDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.CUSTOMER);
+    private final SalesRollupDaoImpl salesRollupDAO = (SalesRollupDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.SALES_ROLLUP);
+    private final StockReservationService stockReservations = StockReservationService.getInstance();
+    private final PricingEngine pricing = PricingEngine.getInstance();
 
     public Sale createSale(Customer customerInput, List<SaleItem> saleItems,double paid) throws Exception {
-        Connection con = null;
-        try {
+        // 🔹 customer, stock, sale and sale items commit together or not at all
+        return stockReservations.withRetry(() -> TransactionManager.inTransaction(() -> {
         	 // 1 Find or create customer
             Customer customer = customerDAO.getCustomerByTelephone(customerInput.getTelephone());
             if (customer == null) {
@@ -36,89 +43,86 @@ public class SaleService {
                 if (!isCreated) {
                     throw new Exception("Failed to create customer");
                 }
-                customer = customerDAO.getCustomerByTelephone(customerInput.getTelephone());  
+                // create filled in the generated id and reported the customer to CustomerDirectory
+                customer = customerInput;
             }
-            
-            
-            con = DBConnection.getInstance().getConnection();
-            con.setAutoCommit(false); // 🔹 start transaction
-
-           
 
             // 2 Prepare Sale
             Sale sale = new Sale();
             sale.setCustomerId(customer.getId()); 
 
-            BigDecimal total = BigDecimal.ZERO;
-            BigDecimal subTotal = BigDecimal.ZERO;
-            BigDecimal totalDiscount = BigDecimal.ZERO;
+            // 🔹 fetch every cart item in one query, then price the cart exactly as /quote does
+            Map<Long, Integer> qtyByItemId = PricingEngine.quantities(saleItems);
+            Map<Long, Item> itemsById = pricing.loadItems(saleItems);
+            SaleQuote quote = pricing.price(saleItems, itemsById);
+            if (!quote.getInsufficientStock().isEmpty()) {
+                throw new IllegalStateException("Insufficient stock for " + itemsById.get(quote.getInsufficientStock().get(0)).getName());
+            }
 
             // 3 Process Sale Items
-            for (SaleItem si : saleItems) {
-                Item item = itemDAO.get(si.getItem().getItemId());
-                if (item == null) throw new Exception("Item not found " + si.getItem().getItemId());
-
-                if (item.getStockAvailable() < si.getQty()) {
-                    throw new Exception("Insufficient stock for " + item.getName());
-                }
-
-                BigDecimal price = BigDecimal.valueOf(item.getUnitPrice());
-                BigDecimal discount = BigDecimal.ZERO;
-
-                if (si.getQty() >= item.getQtyToAllowDiscount()) {
-                    discount = BigDecimal.valueOf(item.getDiscount());
-                }
-
-                BigDecimal lineTotal = (price.subtract(discount))
-                    .multiply(BigDecimal.valueOf(si.getQty()));
-
-                si.setItem(item);
-                si.setDiscountAmount(discount.doubleValue());
-                si.setItemTotal(lineTotal.doubleValue());
-
-                subTotal = subTotal.add(price.multiply(BigDecimal.valueOf(si.getQty())));
-                totalDiscount = totalDiscount.add(discount.multiply(BigDecimal.valueOf(si.getQty())));
-                total = total.add(lineTotal);
+            for (int i = 0; i < saleItems.size(); i++) {
+                SaleItem si = saleItems.get(i);
+                SaleQuote.Line line = quote.getLines().get(i);
+                si.setItem(itemsById.get(line.getItemId()));
+                si.setDiscountAmount(line.getDiscountAmount());
+                si.setItemTotal(line.getItemTotal());
+            }
 
-                // 🔹 reduce stock immediately
-                itemDAO.updateStock(item.getItemId(), item.getStockAvailable() - si.getQty());
+            // 🔹 reduce stock for all items in one batch; the stock check is part of each update
+            List<Long> insufficient = stockReservations.reserve(qtyByItemId);
+            if (!insufficient.isEmpty()) {
+                throw new IllegalStateException("Insufficient stock for " + itemsById.get(insufficient.get(0)).getName());
             }
 
-            // 4 Save Sale
-            sale.setSubTotal(subTotal.doubleValue());
-            sale.setTotalDiscount(totalDiscount.doubleValue());
-            sale.setTotalAmount(total.doubleValue());
-            sale.setPaid(0.0);     // You can adjust later
-            sale.setBalance(total.doubleValue()); // assuming not paid yet
+            // 4 Save Sale, payment included
+            sale.setSubTotal(quote.getSubTotal());
+            sale.setTotalDiscount(quote.getTotalDiscount());
+            sale.setTotalAmount(quote.getTotalAmount());
+            sale.setPaid(paid);
+            sale.setBalance(paid - quote.getTotalAmount());
             long saleId = saleDAO.createSale(sale);
             if (saleId <= 0) throw new Exception("Failed to save sale");
             sale.setSaleId(saleId);
+            // the database stamps sale_date and sale_time; read them back so every figure below buckets the sale
+            // by the same clock as the rows that later reseed them
+            SaleKey stamped = saleDAO.getSaleKey(saleId);
+            sale.setSaleDate(stamped.saleDate());
+            sale.setSaleTime(stamped.saleTime());
             // 5 Save Sale Items
             for (SaleItem si : saleItems) {
                 si.setSaleId(saleId);
-                boolean itemSaved = saleItemDAO.create(si);
-                if (!itemSaved) throw new Exception("Failed to save sale item");
             }
-            double balance =  paid - total.doubleValue();
-            saleDAO.updatePayment(saleId, paid, balance);
+            if (!saleItemDAO.createAll(saleItems)) throw new Exception("Failed to save sale item");
+            // 🔹 daily totals last, as every sale of the day updates the same row
+            if (!salesRollupDAO.recordSale(sale, saleItems)) throw new Exception("Failed to update daily sales totals");
+
+            // 6 Dashboard figures and the sales time series move only once all of this commits
+            long unitsSold = 0;
+            double stockValueSold = 0;
+            for (Map.Entry<Long, Integer> line : qtyByItemId.entrySet()) {
+                unitsSold += line.getValue();
+                stockValueSold += line.getValue() * itemsById.get(line.getKey()).getUnitPrice();
+            }
+            DashboardCounters.getInstance().saleCommitted(sale.getSaleDate(), sale.getTotalAmount(), unitsSold, stockValueSold,
+                    itemsById.values());
+            SalesTimeSeries.getInstance().saleCommitted(saleId, sale.getSaleDate(), sale.getSaleTime(),
+                    sale.getTotalAmount(), (int) unitsSold);
 
-            con.commit(); //  commit all
             return sale;
-
-        } catch (Exception e) {
-            if (con != null) {
-                try { con.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
-            }
-            throw e; // rethrow to servlet
-        } finally {
-            if (con != null) {
-                try { con.setAutoCommit(true); con.close(); } catch (SQLException ex) { ex.printStackTrace(); }
-            }
-        }
+        }));
     }
     
+    // What the cart would cost at checkout right now, priced from cached items; nothing is written
+    public SaleQuote quote(List<SaleItem> saleItems, double paid) throws Exception {
+        return pricing.quote(saleItems, paid);
+    }
+
     public PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int page) throws Exception {
-        PaginatedResponse<Sale> paginatedSales = saleDAO.getSalesByCustomer(customer, page);
+        return getSalesByCustomer(customer, page, true);
+    }
+
+    public PaginatedResponse<Sale> getSalesByCustomer(Customer customer, int page, boolean exactCount) throws Exception {
+        PaginatedResponse<Sale> paginatedSales = saleDAO.getSalesByCustomer(customer, page, exactCount);
  
 
         return paginatedSales;
@@ -129,16 +133,47 @@ public class SaleService {
    
     }
 
+    // Batch lookups for ?ids=, in request order
+    public List<Sale> getByIds(List<Long> ids) throws Exception {
+        return saleDAO.getByIds(ids);
+    }
+
+    public List<SaleSummary> getSummariesByIds(List<Long> ids) throws Exception {
+        return saleDAO.getSummariesByIds(ids);
+    }
+
     public PaginatedResponse<Sale> getAll(int page) throws Exception{
         PaginatedResponse<Sale> paginatedSales = saleDAO.getAll(page);
         
         return paginatedSales;
     }
+
+    public PaginatedResponse<Sale> getAll(PageCursor after) throws Exception{
+        return saleDAO.getAll(after);
+    }
     
     
     public List<Sale> getRecent5Sales() throws Exception{
     	return saleDAO.getRecentSales(5);
     }
+
+    // Summary listings: headers and line counts only, for screens that fetch a sale's lines on demand
+
+    public PaginatedResponse<SaleSummary> getSummaries(int page) throws Exception {
+        return saleDAO.getSummaries(page);
+    }
+
+    public PaginatedResponse<SaleSummary> getSummaries(PageCursor after) throws Exception {
+        return saleDAO.getSummaries(after);
+    }
+
+    public PaginatedResponse<SaleSummary> getSummariesByCustomer(Customer customer, int page, boolean exactCount) throws Exception {
+        return saleDAO.getSummariesByCustomer(customer, page, exactCount);
+    }
+
+    public List<SaleSummary> getRecent5Summaries() throws Exception {
+        return saleDAO.getRecentSummaries(5);
+    }
     
     public boolean updatePayment(long saleId,double paid, double balance) throws Exception {
     	return saleDAO.updatePayment(saleId, paid, balance);
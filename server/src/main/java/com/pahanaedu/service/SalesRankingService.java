@@ -0,0 +1,228 @@
+package com.pahanaedu.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.pahanaedu.cache.ExpiringCache;
+import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.custom.AnalyticsDaoImpl;
+import com.pahanaedu.dao.custom.CategoryDaoImpl;
+import com.pahanaedu.dao.custom.ItemDaoImpl;
+import com.pahanaedu.dto.SalesRank;
+import com.pahanaedu.model.Category;
+import com.pahanaedu.model.Item;
+import com.pahanaedu.util.IdTotals;
+import com.pahanaedu.util.LatencyHistogram;
+import com.pahanaedu.util.SingleFlight;
+
+/**
+ * Best-selling items and categories over a date range, summed from sale_items in parallel.
+ *
+ * The range's sales are split by sale id into partitions of a few thousand sales; a fork/join pool of its own
+ * (-Dpahanaedu.analytics.parallelism, at most 4 by default so the connection pool keeps room for billing) has the
+ * database total each partition per item, and the partial totals are merged on the way back up. Category totals are
+ * then derived from the item totals using each item's current category. Results are kept per range: for a
+ * range that ends before today for 10 minutes, otherwise for 30 seconds.
+ */
+public class SalesRankingService {
+
+    private static final SalesRankingService instance = new SalesRankingService();
+
+    private static final long CLOSED_RANGE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long OPEN_RANGE_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final AnalyticsDaoImpl analyticsDao =
+        (AnalyticsDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ANALYTICS);
+    private final ItemDaoImpl itemDao = (ItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ITEM);
+    private final CategoryDaoImpl categoryDao =
+        (CategoryDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.CATEGORY);
+
+    private final ForkJoinPool pool = new ForkJoinPool(Integer.getInteger("pahanaedu.analytics.parallelism",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+    private final int partitionSales = Integer.getInteger("pahanaedu.analytics.partitionSales", 5_000);
+    private final ExpiringCache<String, Totals> windows = new ExpiringCache<>(CLOSED_RANGE_TTL_MS, 64);
+    private final SingleFlight<String, Totals> aggregations = new SingleFlight<>();
+
+    private final LongAdder partitions = new LongAdder();
+    private final LatencyHistogram aggregateLatency = new LatencyHistogram();
+
+    // Item and category totals for one range
+    private record Totals(IdTotals items, IdTotals categories) {
+    }
+
+    private SalesRankingService() {
+    }
+
+    public static SalesRankingService getInstance() {
+        return instance;
+    }
+
+    // The best sellers by revenue, or by units when byUnits is set
+    public List<SalesRank> getTopItems(LocalDate from, LocalDate to, int limit, boolean byUnits) throws Exception {
+        List<SalesRank> ranks = rank(totals(from, to).items(), limit, byUnits);
+        List<Long> ids = new ArrayList<>();
+        for (SalesRank rank : ranks) {
+            ids.add(rank.getId());
+        }
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemDao.getByIds(ids)) {
+            items.put(item.getItemId(), item);
+        }
+        for (SalesRank rank : ranks) {
+            Item item = items.get(rank.getId());
+            if (item != null) {
+                rank.setName(item.getName());
+                rank.setCategoryId(item.getCategoryId());
+                rank.setCategoryName(categoryName(item.getCategoryId()));
+            }
+        }
+        return ranks;
+    }
+
+    public List<SalesRank> getTopCategories(LocalDate from, LocalDate to, boolean byUnits) throws Exception {
+        IdTotals categories = totals(from, to).categories();
+        List<SalesRank> ranks = rank(categories, categories.size(), byUnits);
+        for (SalesRank rank : ranks) {
+            rank.setName(categoryName(rank.getId()));
+        }
+        return ranks;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private Totals totals(LocalDate from, LocalDate to) throws Exception {
+        String key = from + ".." + to;
+        Totals totals = windows.get(key);
+        if (totals != null) {
+            return totals;
+        }
+        // a range opened by several staff at once is aggregated once
+        return aggregations.execute(key, () -> {
+            Totals aggregated = aggregate(from, to);
+            windows.put(key, aggregated, to.isBefore(LocalDate.now()) ? CLOSED_RANGE_TTL_MS : OPEN_RANGE_TTL_MS);
+            return aggregated;
+        });
+    }
+
+    private Totals aggregate(LocalDate from, LocalDate to) throws Exception {
+        long startedAt = System.nanoTime();
+        try {
+            long[] saleIds = analyticsDao.getSaleIdRange(from, to);
+            if (saleIds == null) {
+                return new Totals(new IdTotals(), new IdTotals());
+            }
+            IdTotals items;
+            try {
+                items = pool.invoke(new PartitionTask(saleIds[0], saleIds[1], from, to));
+            } catch (PartitionFailure e) {
+                throw e.failure;
+            }
+
+            List<Long> itemIds = new ArrayList<>();
+            items.forEach((id, units, revenue) -> itemIds.add(id));
+            Map<Long, Long> categoryOf = new HashMap<>();
+            for (Item item : itemDao.getByIds(itemIds)) {
+                categoryOf.put(item.getItemId(), item.getCategoryId());
+            }
+            IdTotals categories = new IdTotals();
+            items.forEach((id, units, revenue) -> {
+                Long categoryId = categoryOf.get(id);
+                if (categoryId != null) {
+                    categories.add(categoryId, units, revenue);
+                }
+            });
+            return new Totals(items, categories);
+        } finally {
+            aggregateLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    // Sums one stretch of sale ids, splitting it in two while it is larger than a partition
+    private final class PartitionTask extends RecursiveTask<IdTotals> {
+        private static final long serialVersionUID = 1L;
+
+        private final long fromSaleId;
+        private final long toSaleId;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        PartitionTask(long fromSaleId, long toSaleId, LocalDate from, LocalDate to) {
+            this.fromSaleId = fromSaleId;
+            this.toSaleId = toSaleId;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IdTotals compute() {
+            if (toSaleId - fromSaleId < partitionSales) {
+                partitions.increment();
+                try {
+                    return analyticsDao.sumSaleLinesByItem(fromSaleId, toSaleId, from, to);
+                } catch (Exception e) {
+                    throw new PartitionFailure(e);
+                }
+            }
+            long middle = fromSaleId + (toSaleId - fromSaleId) / 2;
+            PartitionTask upper = new PartitionTask(middle + 1, toSaleId, from, to);
+            upper.fork();
+            IdTotals totals = new PartitionTask(fromSaleId, middle, from, to).compute();
+            IdTotals upperTotals = upper.join();
+            // merge the smaller into the larger
+            if (upperTotals.size() > totals.size()) {
+                upperTotals.addAll(totals);
+                return upperTotals;
+            }
+            totals.addAll(upperTotals);
+            return totals;
+        }
+    }
+
+    // Carries a partition's checked exception out of the pool
+    private static final class PartitionFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Exception failure;
+
+        PartitionFailure(Exception failure) {
+            super(failure);
+            this.failure = failure;
+        }
+    }
+
+    private static List<SalesRank> rank(IdTotals totals, int limit, boolean byUnits) {
+        List<SalesRank> ranks = new ArrayList<>(totals.size());
+        totals.forEach((id, units, revenue) -> ranks.add(new SalesRank(id, units, revenue)));
+        Comparator<SalesRank> order = byUnits
+                ? Comparator.comparingLong(SalesRank::getUnits).reversed()
+                : Comparator.comparingDouble(SalesRank::getRevenue).reversed();
+        ranks.sort(order.thenComparingLong(SalesRank::getId));
+        return new ArrayList<>(ranks.subList(0, Math.min(limit, ranks.size())));
+    }
+
+    private String categoryName(Long categoryId) throws Exception {
+        Category category = categoryId != null ? categoryDao.get(categoryId) : null;
+        return category != null ? category.getName() : null;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(windows.getMetrics());
+        metrics.put("parallelism", pool.getParallelism());
+        metrics.put("partitionSales", partitionSales);
+        metrics.put("partitions", partitions.sum());
+        metrics.put("coalescing", aggregations.getMetrics());
+        metrics.put("aggregateLatency", aggregateLatency.toMap());
+        return metrics;
+    }
+}
@@ -6,6 +6,7 @@ import com.pahanaedu.dao.DaoFactory;
 import com.pahanaedu.dao.custom.StaffDaoImpl;
 import com.pahanaedu.dto.LoginDto;
 import com.pahanaedu.model.Staff; 
+import com.pahanaedu.util.AuthUtil;
 import com.pahanaedu.util.PasswordHash;
 
 public class StaffService {
@@ -21,7 +22,9 @@ public class StaffService {
 	
 	public Staff getStaffUser(String username) throws Exception {
 		 Staff staff = staffDAO.getStaffByUserName(username);
-		 staff.setPassword(null);
+		 if (staff != null) {
+			 staff.setPassword(null);
+		 }
 		 return staff;
 	}
 	
@@ -40,12 +43,17 @@ public class StaffService {
 		return staffDAO.create(staff);
 	}
 	
+	// Role or username changes must reach AuthUtil's principal cache before the next request
 	public boolean delete(Long id) throws Exception {
-		 return staffDAO.delete(id);
+		 boolean deleted = staffDAO.delete(id);
+		 AuthUtil.invalidatePrincipals();
+		 return deleted;
 	}
 	
 	public boolean updateStaff(Staff staff) throws Exception {
-	    return staffDAO.update(staff);
+	    boolean updated = staffDAO.update(staff);
+	    AuthUtil.invalidatePrincipals();
+	    return updated;
 	}
 
 }
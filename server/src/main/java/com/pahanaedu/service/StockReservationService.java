@@ -0,0 +1,161 @@
+package com.pahanaedu.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pahanaedu.dao.DaoFactory;
+import com.pahanaedu.dao.TransactionManager;
+import com.pahanaedu.dao.custom.ItemDaoImpl;
+import com.pahanaedu.util.LatencyHistogram;
+import com.pahanaedu.util.StripedLocks;
+
+/**
+ * Takes stock off items without overselling.
+ * Sales of the same item queue on an in-process lock first, so only one of them at a time waits on the InnoDB row lock.
+ * The decrement itself is conditional, so an oversell is impossible even across servers.
+ */
+public class StockReservationService {
+
+    private static final StockReservationService instance = new StockReservationService();
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_BACKOFF_MS = 25;
+    private static final long LOCK_TIMEOUT_MS = 3_000;
+
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    private final ItemDaoImpl itemDAO = (ItemDaoImpl) DaoFactory.getInstance().getDao(DaoFactory.DaoTypes.ITEM);
+    private final StripedLocks locks = new StripedLocks(256);
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+    private final LatencyHistogram lockWaitLatency = new LatencyHistogram();
+
+    private StockReservationService() {
+    }
+
+    public static StockReservationService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Decrements stock for every item, or for none of them when the surrounding transaction rolls back.
+     * The item locks stay held until that transaction ends. Returns the ids of items that did not have enough stock.
+     */
+    public List<Long> reserve(Map<Long, Integer> qtyByItemId) throws Exception {
+        List<ReentrantLock> held = lockAll(qtyByItemId);
+        try {
+            reservations.increment();
+            List<Long> insufficient = itemDAO.decrementStock(qtyByItemId);
+            if (!insufficient.isEmpty()) {
+                conflicts.increment();
+            }
+            return insufficient;
+        } finally {
+            // Runs straight away when there is no transaction to wait for
+            TransactionManager.afterCompletion(() -> unlockAll(held));
+        }
+    }
+
+    // Runs a whole transaction again when InnoDB aborts it for a deadlock or lock wait timeout
+    public <T> T withRetry(Callable<T> transaction) throws Exception {
+        if (TransactionManager.isActive()) {
+            // Only the outermost caller can safely start over
+            return transaction.call();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.call();
+            } catch (Exception e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= MAX_ATTEMPTS) {
+                    retriesExhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private List<ReentrantLock> lockAll(Map<Long, Integer> qtyByItemId) throws InterruptedException {
+        List<ReentrantLock> held = new ArrayList<>();
+        long start = System.nanoTime();
+        boolean waited = false;
+        try {
+            for (ReentrantLock lock : locks.locksFor(qtyByItemId.keySet())) {
+                if (!lock.tryLock()) {
+                    waited = true;
+                    if (!lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        lockTimeouts.increment();
+                        throw new IllegalStateException("Stock is busy for one of the items, please try again");
+                    }
+                }
+                held.add(lock);
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            unlockAll(held);
+            throw e;
+        }
+
+        if (waited) {
+            lockWaits.increment();
+            lockWaitLatency.record(System.nanoTime() - start);
+        }
+        return held;
+    }
+
+    private void unlockAll(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+        held.clear();
+    }
+
+    private boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                if (sql.getErrorCode() == ER_LOCK_DEADLOCK || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                        || "40001".equals(sql.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Exponential backoff with jitter so the retrying transactions do not collide again in lockstep
+    private void backoff(int attempt) throws InterruptedException {
+        long ceiling = BASE_BACKOFF_MS << (attempt - 1);
+        Thread.sleep(ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1));
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("reservations", reservations.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("lockWaits", lockWaits.sum());
+        metrics.put("lockTimeouts", lockTimeouts.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("retriesExhausted", retriesExhausted.sum());
+        metrics.put("lockWaitLatency", lockWaitLatency.toMap());
+        return metrics;
+    }
+}
@@ -1,6 +1,8 @@
 package com.pahanaedu.servlet;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -10,6 +12,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pahanaedu.cache.SalesTimeSeries;
 import com.pahanaedu.model.Staff;
 import com.pahanaedu.service.AnalyticsService;
 import com.pahanaedu.util.AuthUtil;
@@ -19,6 +22,10 @@ import com.pahanaedu.util.Util;
 public class AnalyticsServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    // Rollup endpoints default to the last 30 days
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    private static final int DEFAULT_TOP_ITEMS = 10;
+
     private final AnalyticsService analyticsService = new AnalyticsService();
     private final ObjectMapper objectMapper = Util.getObjectMapper();
 
@@ -32,12 +39,55 @@ public class AnalyticsServlet extends HttpServlet {
  
 
             String pathInfo = req.getPathInfo(); // e.g. /dashboard or /items
-            Map<String, Object> stats;
+            Object stats;
 
             if ("/dashboard".equals(pathInfo)) {
                 stats = analyticsService.getDashboardStats();
             } else if ("/items".equals(pathInfo)) {
                 stats = analyticsService.getItemAnalytics();
+            } else if ("/daily".equals(pathInfo) || "/categories".equals(pathInfo)) {
+                // revenue figures are for signed-in staff only
+                Staff loggedInStaff = AuthUtil.authenticate(req, resp);
+                if (loggedInStaff == null) return;
+
+                LocalDate to = dateParam(req, "to", LocalDate.now());
+                LocalDate from = dateParam(req, "from", to.minusDays(DEFAULT_RANGE_DAYS - 1));
+                if ("/daily".equals(pathInfo)) {
+                    String categoryParam = req.getParameter("categoryId");
+                    Long categoryId = Util.anyNullOrEmpty(categoryParam) ? null : Long.parseLong(categoryParam);
+                    stats = analyticsService.getDailySales(from, to, categoryId);
+                } else {
+                    stats = analyticsService.getCategorySales(from, to);
+                }
+            } else if ("/top-items".equals(pathInfo) || "/top-categories".equals(pathInfo)) {
+                Staff loggedInStaff = AuthUtil.authenticate(req, resp);
+                if (loggedInStaff == null) return;
+
+                LocalDate to = dateParam(req, "to", LocalDate.now());
+                LocalDate from = dateParam(req, "from", to.minusDays(DEFAULT_RANGE_DAYS - 1));
+                // ?by=units ranks by quantity sold instead of revenue
+                boolean byUnits = "units".equalsIgnoreCase(req.getParameter("by"));
+                if ("/top-items".equals(pathInfo)) {
+                    String limitParam = req.getParameter("limit");
+                    int limit = Util.anyNullOrEmpty(limitParam) ? DEFAULT_TOP_ITEMS : Integer.parseInt(limitParam);
+                    stats = analyticsService.getTopItems(from, to, limit, byUnits);
+                } else {
+                    stats = analyticsService.getTopCategories(from, to, byUnits);
+                }
+            } else if ("/timeseries".equals(pathInfo)) {
+                Staff loggedInStaff = AuthUtil.authenticate(req, resp);
+                if (loggedInStaff == null) return;
+
+                // ?granularity=hour|day|month (hourly, daily and monthly are accepted too); defaults to day
+                SalesTimeSeries.Granularity granularity = granularityParam(req.getParameter("granularity"));
+                LocalDate to = dateParam(req, "to", LocalDate.now());
+                LocalDate defaultFrom = switch (granularity) {
+                    case HOUR -> to;
+                    case DAY -> to.minusDays(DEFAULT_RANGE_DAYS - 1);
+                    case MONTH -> to.minusMonths(11).withDayOfMonth(1);
+                };
+                LocalDate from = dateParam(req, "from", defaultFrom);
+                stats = analyticsService.getTimeSeries(from, to, granularity);
             } else {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 resp.getWriter().write("{\"error\":\"Invalid analytics endpoint\"}");
@@ -47,9 +97,68 @@ public class AnalyticsServlet extends HttpServlet {
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.getWriter().write(objectMapper.writeValueAsString(stats));
 
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    // POST /api/analytics/rollup/rebuild?from=&to= recomputes the daily sales rollup for past days
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+
+        try {
+            Staff staff = AuthUtil.authenticate(req, resp);
+            if (staff == null) return;
+            if (!AuthUtil.authorizeRole(staff, "MANAGER", resp)) return;
+
+            if (!"/rollup/rebuild".equals(req.getPathInfo())) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"Invalid analytics endpoint\"}");
+                return;
+            }
+
+            LocalDate to = dateParam(req, "to", LocalDate.now().minusDays(1));
+            LocalDate from = dateParam(req, "from", to.minusDays(DEFAULT_RANGE_DAYS - 1));
+            boolean rebuilt = analyticsService.rebuildDailySales(from, to);
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.getWriter().write("{\"success\":" + rebuilt + ",\"from\":\"" + from + "\",\"to\":\"" + to + "\"}");
+
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         }
     }
+
+    private SalesTimeSeries.Granularity granularityParam(String value) {
+        if (Util.anyNullOrEmpty(value)) {
+            return SalesTimeSeries.Granularity.DAY;
+        }
+        switch (value.toLowerCase()) {
+        case "hour":
+        case "hourly":
+            return SalesTimeSeries.Granularity.HOUR;
+        case "day":
+        case "daily":
+            return SalesTimeSeries.Granularity.DAY;
+        case "month":
+        case "monthly":
+            return SalesTimeSeries.Granularity.MONTH;
+        default:
+            throw new IllegalArgumentException("granularity must be hour, day or month");
+        }
+    }
+
+    // yyyy-MM-dd, or the fallback when the parameter is absent
+    private LocalDate dateParam(HttpServletRequest req, String name, LocalDate fallback) {
+        String value = req.getParameter(name);
+        return Util.anyNullOrEmpty(value) ? fallback : LocalDate.parse(value);
+    }
 }
@@ -5,6 +5,7 @@ import com.pahanaedu.model.Category;
 import com.pahanaedu.model.Staff;
 import com.pahanaedu.service.CategoryService;
 import com.pahanaedu.util.AuthUtil;
+import com.pahanaedu.util.ConditionalGet;
 import com.pahanaedu.util.Util;
 
 import javax.servlet.ServletException;
@@ -27,6 +28,8 @@ public class CategoryServlet extends HttpServlet {
 
     		Staff staff = AuthUtil.authenticate(req, resp);
     		if (staff == null) return; 
+    		// category reads include per-category item counts, so item writes change them too
+    		if (ConditionalGet.notModified(req, resp, "category", "item")) return;
     		
             String pathInfo = req.getPathInfo(); // e.g. /123 or /search
             resp.setContentType("application/json");
@@ -34,6 +37,7 @@ public class CategoryServlet extends HttpServlet {
             if (pathInfo == null || pathInfo.equals("/")) { 
 
                 List<Category> categories = categoryService.getAll();
+                resp.setHeader("X-Category-Version", String.valueOf(categoryService.getVersion()));
                 resp.getWriter().write(objectMapper.writeValueAsString(categories));
                 return;
             }
@@ -6,11 +6,13 @@ import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Customer;
 import com.pahanaedu.model.Staff;
 import com.pahanaedu.service.CustomerService;
 import com.pahanaedu.util.AuthUtil;
+import com.pahanaedu.util.ConditionalGet;
 import com.pahanaedu.util.Util;
 
 import java.io.IOException;
@@ -33,17 +35,29 @@ public class CustomerServlet extends HttpServlet {
 
     		Staff staff = AuthUtil.authenticate(req, resp);
     		if (staff == null) return; 
+    		if (ConditionalGet.notModified(req, resp, "customers")) return;
         String pathInfo = req.getPathInfo(); // e.g., /123 or /search or /telephone
         resp.setContentType("application/json");
 
         if (pathInfo == null || pathInfo.equals("/")) { 
         	
-            // List all customers with pagination (e.g. /api/customers?page=1)
+            // several customers at once: ?ids=1,2,3 (at most 100), in the order asked for
+            String ids = req.getParameter("ids");
+            if (ids != null) {
+                List<Customer> customers = customerService.getByIds(Util.parseIds(ids));
+                resp.getWriter().write(objectMapper.writeValueAsString(customers));
+                return;
+            }
+
+            // List all customers with pagination (e.g. /api/customers?page=1, or ?after=<cursor> to seek)
+            String after = req.getParameter("after");
             int page = 1;
             String pageParam = req.getParameter("page");
             if (pageParam != null) page = Integer.parseInt(pageParam);
             
-            PaginatedResponse<Customer> customers = customerService.getAll(page);
+            PaginatedResponse<Customer> customers = after != null
+                    ? customerService.getAll(PageCursor.decode(after))
+                    : customerService.getAll(page);
             resp.getWriter().write(objectMapper.writeValueAsString(customers));
             
             return;
@@ -84,6 +98,21 @@ public class CustomerServlet extends HttpServlet {
                 
                 break;
             }
+                case "suggest": { // /api/customers/suggest?q=0771&limit=10 (partial telephone or name)
+                    String q = req.getParameter("q");
+                    if (q == null || q.isBlank()) {
+                        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        resp.getWriter().write("{\"error\":\"q parameter not found\"}");
+                        return;
+                    }
+                    int limit = 10;
+                    String limitParam = req.getParameter("limit");
+                    if (limitParam != null) limit = Math.max(1, Math.min(50, Integer.parseInt(limitParam)));
+
+                    List<Customer> customers = customerService.suggest(q, limit);
+                    resp.getWriter().write(objectMapper.writeValueAsString(customers));
+                    break;
+                }
                 case "telephone": { // /api/customers/telephone?number=123456789
                 	
                     String number = req.getParameter("number");
@@ -126,6 +155,9 @@ public class CustomerServlet extends HttpServlet {
                 }
             }
         }
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch(Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -1,11 +1,14 @@
 package com.pahanaedu.servlet;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pahanaedu.dao.PageCursor;
+import com.pahanaedu.dto.ItemSuggestion;
 import com.pahanaedu.dto.PaginatedResponse;
 import com.pahanaedu.model.Item;
 import com.pahanaedu.model.Staff;
 import com.pahanaedu.service.ItemService;
 import com.pahanaedu.util.AuthUtil;
+import com.pahanaedu.util.ConditionalGet;
 import com.pahanaedu.util.Util;
 
 import javax.servlet.ServletException;
@@ -27,16 +30,28 @@ public class ItemServlet extends HttpServlet {
 
     		Staff staff = AuthUtil.authenticate(req, resp);
     		if (staff == null) return; 
+    		if (ConditionalGet.notModified(req, resp, "item")) return;
             String pathInfo = req.getPathInfo(); // e.g. /123 or /search
             resp.setContentType("application/json");
 
             if (pathInfo == null || pathInfo.equals("/")) {
-                // list all items with pagination
+                // several items at once: ?ids=1,2,3 (at most 100), in the order asked for
+                String ids = req.getParameter("ids");
+                if (ids != null) {
+                    List<Item> items = itemService.getByIds(Util.parseIds(ids));
+                    resp.getWriter().write(objectMapper.writeValueAsString(items));
+                    return;
+                }
+
+                // list all items with pagination: ?after=<cursor> seeks, ?page=N keeps offset paging
+                String after = req.getParameter("after");
                 int page = 1;
                 String pageParam = req.getParameter("page");
                 if (pageParam != null) page = Integer.parseInt(pageParam);
 
-                PaginatedResponse<Item> items = itemService.getAll(page);
+                PaginatedResponse<Item> items = after != null
+                        ? itemService.getAll(PageCursor.decode(after))
+                        : itemService.getAll(page);
                 resp.getWriter().write(objectMapper.writeValueAsString(items));
                 return;
             }
@@ -58,7 +73,12 @@ public class ItemServlet extends HttpServlet {
                         String pageParam = req.getParameter("page");
                         if (pageParam != null) page = Integer.parseInt(pageParam);
 
-                        PaginatedResponse<Item> items = itemService.searchByName(name, page);
+                        // ?exactCount=false accepts an estimated total instead of counting every match
+                        boolean exactCount = !"false".equalsIgnoreCase(req.getParameter("exactCount"));
+                        String after = req.getParameter("after");
+                        PaginatedResponse<Item> items = after != null
+                                ? itemService.searchByName(name, PageCursor.decode(after), exactCount)
+                                : itemService.searchByName(name, page, exactCount);
                         resp.getWriter().write(objectMapper.writeValueAsString(items));
                         break;
                     }
@@ -74,10 +94,28 @@ public class ItemServlet extends HttpServlet {
                         String pageParam = req.getParameter("page");
                         if (pageParam != null) page = Integer.parseInt(pageParam);
 
-                        PaginatedResponse<Item> items = itemService.getItemsByCategoryId(categoryId, page);
+                        boolean exactCount = !"false".equalsIgnoreCase(req.getParameter("exactCount"));
+                        String after = req.getParameter("after");
+                        PaginatedResponse<Item> items = after != null
+                                ? itemService.getItemsByCategoryId(categoryId, PageCursor.decode(after), exactCount)
+                                : itemService.getItemsByCategoryId(categoryId, page, exactCount);
                         resp.getWriter().write(objectMapper.writeValueAsString(items));
                         break;
                     }
+                    case "suggest": { // /api/items/suggest?q=pen&limit=10
+                        String q = req.getParameter("q");
+                        if (q == null || q.isBlank()) {
+                            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                            resp.getWriter().write("{\"error\":\"q parameter required\"}");
+                            return;
+                        }
+                        int limit = 10;
+                        String limitParam = req.getParameter("limit");
+                        if (limitParam != null) limit = Math.max(1, Math.min(50, Integer.parseInt(limitParam)));
+                        List<ItemSuggestion> suggestions = itemService.suggest(q, limit);
+                        resp.getWriter().write(objectMapper.writeValueAsString(suggestions));
+                        break;
+                    }
                     case "lowStock": { // /api/items/lowStock?threshold=5
                         String thresholdParam = req.getParameter("threshold");
                         if (thresholdParam == null) {
@@ -112,6 +150,9 @@ public class ItemServlet extends HttpServlet {
         } catch (IllegalStateException e) {
             resp.setStatus(HttpServletResponse.SC_CONFLICT);
             resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+     } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
      } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -203,9 +244,10 @@ public class ItemServlet extends HttpServlet {
                                 return;
                             }
 
-                            int newstock = item.getStockAvailable() + existing.getStockAvailable();
-                            item.setStockAvailable(newstock);  
-                            itemService.update(item);
+                            // stockAvailable in the body is the quantity received
+                            Integer restock = item.getStockAvailable();
+                            item.setStockAvailable(null);
+                            itemService.update(item, restock == null ? 0 : restock);
                             resp.getWriter().write(objectMapper.writeValueAsString(itemService.get(id)));
 
                         } catch (IllegalStateException e) {
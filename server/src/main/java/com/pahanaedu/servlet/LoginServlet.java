@@ -1,58 +1,135 @@
-package com.pahanaedu.servlet; 
+package com.pahanaedu.servlet;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse; 
+import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.databind.ObjectMapper; 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pahanaedu.dto.LoginDto;
-import com.pahanaedu.model.Staff; 
-import com.pahanaedu.service.StaffService;
+import com.pahanaedu.model.Staff;
+import com.pahanaedu.service.LoginVerificationService;
 import com.pahanaedu.util.JwtValidator;
 import com.pahanaedu.util.Util;
 
 /**
  * Servlet implementation class LoginServlet
+ *
+ * The password check runs on LoginVerificationService's pool while the request is suspended, so bcrypt never
+ * holds a Tomcat thread. When that pool is saturated the login is turned away with 503 and Retry-After.
  */
-@WebServlet("/api/login")
+@WebServlet(value = "/api/login", asyncSupported = true)
 public class LoginServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
-       
+
+    private static final long ASYNC_TIMEOUT_MS = 15_000;
+    private static final String RETRY_AFTER_SECONDS = "2";
+
     private final ObjectMapper objectMapper = Util.getObjectMapper();
-    private final StaffService staffService = new StaffService();
-    
+    private final LoginVerificationService loginVerifier = LoginVerificationService.getInstance();
+
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        
+
         resp.setContentType("application/json");
 
-        try { 
-        	LoginDto loginDto = Util.parseJsonBody(req, LoginDto.class); 
-
-            Map<String, Object> response = new HashMap<>(); 
-            Staff staff = staffService.verifyPassword(loginDto);
-            if(staff!=null) {
-                String token = JwtValidator.generateToken(staff.getUsername(),staff.getRole().name());
-                response.put("success", true);
-                response.put("token", token);
-                response.put("userId", staff.getId());
-                response.put("username", staff.getUsername());
-                response.put("role", staff.getRole());
-            } else {
-                resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.put("success", false);
-                response.put("message", "Invalid username or password");
-            }
-            resp.getWriter().write(objectMapper.writeValueAsString(response));
+        LoginDto loginDto;
+        try {
+        	loginDto = Util.parseJsonBody(req, LoginDto.class);
         } catch (Exception e) {
             resp.setStatus(500);
             resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+            return;
+        }
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        // The verification and the timeout can race; whichever finishes first writes the response
+        AtomicBoolean done = new AtomicBoolean();
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                busy(async, done);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        try {
+            loginVerifier.verify(loginDto).whenComplete((staff, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    finish(async, done, 500, "{\"error\":\"" + cause.getMessage() + "\"}");
+                } else {
+                    respond(async, done, staff);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            busy(async, done);
+        }
+    }
+
+    private void respond(AsyncContext async, AtomicBoolean done, Staff staff) {
+        Map<String, Object> response = new HashMap<>();
+        int status = HttpServletResponse.SC_OK;
+        if(staff!=null) {
+            String token = JwtValidator.generateToken(staff.getUsername(),staff.getRole().name());
+            response.put("success", true);
+            response.put("token", token);
+            response.put("userId", staff.getId());
+            response.put("username", staff.getUsername());
+            response.put("role", staff.getRole());
+        } else {
+            status = HttpServletResponse.SC_UNAUTHORIZED;
+            response.put("success", false);
+            response.put("message", "Invalid username or password");
+        }
+        try {
+            finish(async, done, status, objectMapper.writeValueAsString(response));
+        } catch (IOException e) {
+            finish(async, done, 500, "{\"error\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    private void busy(AsyncContext async, AtomicBoolean done) {
+        finish(async, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "{\"error\":\"Too many logins in progress, try again shortly\"}");
+    }
+
+    private void finish(AsyncContext async, AtomicBoolean done, int status, String body) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        HttpServletResponse resp = (HttpServletResponse) async.getResponse();
+        try {
+            resp.setStatus(status);
+            if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                resp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            }
+            resp.getWriter().write(body);
+        } catch (IOException e) {
+            // client went away; nothing left to tell it
+        } finally {
+            async.complete();
         }
     }
 
@@ -0,0 +1,91 @@
+package com.pahanaedu.servlet;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pahanaedu.cache.CategoryRegistry;
+import com.pahanaedu.cache.CustomerDirectory;
+import com.pahanaedu.cache.ItemCache;
+import com.pahanaedu.cache.ItemSearchIndex;
+import com.pahanaedu.cache.SalesTimeSeries;
+import com.pahanaedu.dao.CountCache;
+import com.pahanaedu.model.Staff;
+import com.pahanaedu.service.AnalyticsService;
+import com.pahanaedu.service.DashboardStatsService;
+import com.pahanaedu.service.LoginVerificationService;
+import com.pahanaedu.service.PricingEngine;
+import com.pahanaedu.service.SalesRankingService;
+import com.pahanaedu.service.StockReservationService;
+import com.pahanaedu.util.AuthUtil;
+import com.pahanaedu.util.DBConnection;
+import com.pahanaedu.util.Util;
+
+@WebServlet("/api/metrics/*")
+public class MetricsServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private final ObjectMapper objectMapper = Util.getObjectMapper();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+
+        try {
+            Staff staff = AuthUtil.authenticate(req, resp);
+            if (staff == null) return;
+            if (!AuthUtil.authorizeRole(staff, "MANAGER", resp)) return;
+
+            String pathInfo = req.getPathInfo(); // e.g. /pool
+            Map<String, Object> metrics;
+
+            if ("/pool".equals(pathInfo)) {
+                metrics = DBConnection.getInstance().getPoolMetrics();
+            } else if ("/stock".equals(pathInfo)) {
+                metrics = StockReservationService.getInstance().getMetrics();
+            } else if ("/items".equals(pathInfo)) {
+                metrics = ItemCache.getInstance().getMetrics();
+            } else if ("/categories".equals(pathInfo)) {
+                metrics = CategoryRegistry.getInstance().getMetrics();
+            } else if ("/login".equals(pathInfo)) {
+                metrics = LoginVerificationService.getInstance().getMetrics();
+            } else if ("/auth".equals(pathInfo)) {
+                metrics = AuthUtil.getCacheMetrics();
+            } else if ("/counts".equals(pathInfo)) {
+                metrics = CountCache.getInstance().getMetrics();
+            } else if ("/dashboard".equals(pathInfo)) {
+                metrics = DashboardStatsService.getInstance().getMetrics();
+            } else if ("/timeseries".equals(pathInfo)) {
+                metrics = SalesTimeSeries.getInstance().getMetrics();
+            } else if ("/rankings".equals(pathInfo)) {
+                metrics = SalesRankingService.getInstance().getMetrics();
+            } else if ("/search".equals(pathInfo)) {
+                metrics = ItemSearchIndex.getInstance().getMetrics();
+            } else if ("/customers".equals(pathInfo)) {
+                metrics = CustomerDirectory.getInstance().getMetrics();
+            } else if ("/pricing".equals(pathInfo)) {
+                metrics = PricingEngine.getInstance().getMetrics();
+            } else if ("/analytics".equals(pathInfo)) {
+                metrics = AnalyticsService.getMetrics();
+            } else {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                resp.getWriter().write("{\"error\":\"Invalid metrics endpoint\"}");
+                return;
+            }
+
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.getWriter().write(objectMapper.writeValueAsString(metrics));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"Internal server error\"}");
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.pahanaedu.servlet;
 
 import com.fasterxml.jackson.databind.ObjectMapper; 
+import com.pahanaedu.dao.PageCursor;
 import com.pahanaedu.dto.PaginatedResponse;
+import com.pahanaedu.dto.SaleQuote;
 import com.pahanaedu.dto.SaleRequestDTO;
 import com.pahanaedu.model.Customer;
 import com.pahanaedu.model.Sale;
 import com.pahanaedu.model.Staff;
+import com.pahanaedu.service.SaleSearchService;
 import com.pahanaedu.service.SaleService;
 import com.pahanaedu.util.AuthUtil;
 import com.pahanaedu.util.Util;
@@ -14,7 +17,6 @@ import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.*;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 @WebServlet("/api/sales/*")
@@ -23,6 +25,7 @@ public class SaleServlet extends HttpServlet {
  
     private final ObjectMapper objectMapper = Util.getObjectMapper();
     private final SaleService saleService = new SaleService();
+    private final SaleSearchService saleSearchService = new SaleSearchService();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -32,14 +35,36 @@ public class SaleServlet extends HttpServlet {
     		if (staff == null) return; 
             String pathInfo = req.getPathInfo();
             resp.setContentType("application/json");
+            // Lists return SaleSummary rows unless ?expand=items asks for the full sales with their lines
+            boolean expandItems = "items".equalsIgnoreCase(req.getParameter("expand"));
 
             if (pathInfo == null || pathInfo.equals("/")) {
+                // several sales at once: ?ids=1,2,3 (at most 100), in the order asked for
+                String ids = req.getParameter("ids");
+                if (ids != null) {
+                    List<Long> saleIds = Util.parseIds(ids);
+                    List<?> sales = expandItems ? saleService.getByIds(saleIds) : saleService.getSummariesByIds(saleIds);
+                    resp.getWriter().write(objectMapper.writeValueAsString(sales));
+                    return;
+                }
+
+                // ?after=<cursor> seeks, ?page=N keeps offset paging
+                String after = req.getParameter("after");
                 int page = 1;
                 String pageParam = req.getParameter("page");
                 if (pageParam != null)
                     page = Integer.parseInt(pageParam);
 
-                PaginatedResponse<Sale> sales = saleService.getAll(page);
+                PaginatedResponse<?> sales;
+                if (expandItems) {
+                    sales = after != null
+                            ? saleService.getAll(PageCursor.decode(after))
+                            : saleService.getAll(page);
+                } else {
+                    sales = after != null
+                            ? saleService.getSummaries(PageCursor.decode(after))
+                            : saleService.getSummaries(page);
+                }
                 resp.getWriter().write(objectMapper.writeValueAsString(sales));
                 return;
             }
@@ -61,13 +86,17 @@ public class SaleServlet extends HttpServlet {
                     String pageParam = req.getParameter("page");
                     if (pageParam != null)
                         page = Integer.parseInt(pageParam);
+                    // ?exactCount=false accepts an estimated total instead of counting every match
+                    boolean exactCount = !"false".equalsIgnoreCase(req.getParameter("exactCount"));
                     Customer customer = new Customer("", customerTelephone, "");
-                    PaginatedResponse<Sale> sales = saleService.getSalesByCustomer(customer, page);
+                    PaginatedResponse<?> sales = expandItems
+                            ? saleService.getSalesByCustomer(customer, page, exactCount)
+                            : saleService.getSummariesByCustomer(customer, page, exactCount);
                     resp.getWriter().write(objectMapper.writeValueAsString(sales));
                     break;
                 }
                 case "latest": { 
-                    List<Sale> sales = saleService.getRecent5Sales();
+                    List<?> sales = expandItems ? saleService.getRecent5Sales() : saleService.getRecent5Summaries();
                     resp.getWriter().write(objectMapper.writeValueAsString(sales));
                     break;
                 }
@@ -84,32 +113,9 @@ public class SaleServlet extends HttpServlet {
                         if (pageParam != null)
                             page = Integer.parseInt(pageParam);
 
-                        List<Sale> results = new ArrayList<>();
-
-                        // Try Sale ID match
-                        Sale sale = null;
-                        try {
-                            Long id = Long.parseLong(query);
-                            sale = saleService.get(id);
-                            if (sale != null)
-                                results.add(sale);
-                        } catch (Exception ignored) {
-                        }
-
-                        // Try Customer Telephone match
-                        Customer customer = new Customer("", query, "");
-                        PaginatedResponse<Sale> customerSales = saleService.getSalesByCustomer(customer, page);
-                        results.addAll(customerSales.getData());
-
-                        // Build unified paginated response
-                        PaginatedResponse<Sale> responsePayload = new PaginatedResponse<>(
-                                results,
-                                customerSales.getTotalPages() == 0 
-                                ? (sale == null ? 0 : 1) 
-                                : customerSales.getTotalPages(),
-                                customerSales.getTotalCount() + (sale != null ? 1 : 0));
-
-                        resp.getWriter().write(objectMapper.writeValueAsString(responsePayload));
+                        // a sale id, telephone prefix or name; see SaleSearchService
+                        PaginatedResponse<?> results = saleSearchService.search(query, page, expandItems);
+                        resp.getWriter().write(objectMapper.writeValueAsString(results));
 
                         break;
                     }
@@ -132,6 +138,9 @@ public class SaleServlet extends HttpServlet {
                 }
             }
 
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -147,6 +156,18 @@ public class SaleServlet extends HttpServlet {
     		if (staff == null) return; 
             //  Parse request JSON into SaleRequest DTO
             SaleRequestDTO saleRequest = Util.parseJsonBody(req, SaleRequestDTO.class);
+
+            // /api/sales/quote prices the same request without saving it; the customer is not needed
+            if ("/quote".equals(req.getPathInfo())) {
+                if (saleRequest == null || Util.anyNullOrEmpty(saleRequest.getSaleItems())) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    resp.getWriter().write("{\"error\":\"Invalid quote request\"}");
+                    return;
+                }
+                SaleQuote quote = saleService.quote(saleRequest.getSaleItems(), saleRequest.getPaid());
+                resp.getWriter().write(objectMapper.writeValueAsString(quote));
+                return;
+            }
             if (saleRequest == null || Util.anyNullOrEmpty(saleRequest.getCustomer(), saleRequest.getSaleItems())) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 resp.getWriter().write("{\"error\":\"Invalid sale request\"}");
@@ -163,6 +184,12 @@ public class SaleServlet extends HttpServlet {
             resp.setStatus(HttpServletResponse.SC_CREATED);
             resp.getWriter().write(objectMapper.writeValueAsString(createdSale));
 
+        } catch (IllegalStateException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"error\":\"" + e.getMessage() + "\"}");
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -1,8 +1,13 @@
 package com.pahanaedu.util;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.pahanaedu.cache.ExpiringCache;
 import com.pahanaedu.model.Staff;
 import com.pahanaedu.service.StaffService;
 
@@ -10,6 +15,11 @@ public class AuthUtil {
 
     private static final StaffService staffService = new StaffService();
 
+    // Staff rows by username for a short while, so steady traffic does not look the user up on every call.
+    // StaffService clears it whenever staff are updated or deleted; the TTL bounds anything changed elsewhere.
+    private static final ExpiringCache<String, Staff> principals = new ExpiringCache<>(
+            Long.getLong("pahanaedu.auth.principalTtlMs", 30_000), 1_000);
+
     // Authenticate user with JWT
     public static Staff authenticate(HttpServletRequest req, HttpServletResponse resp) throws Exception {
     	 
@@ -21,14 +31,14 @@ public class AuthUtil {
         }
 
         String token = authHeader.substring(7);
-        String username = JwtValidator.getUsername(token); 
+        String username = usernameOf(token);
         if (username == null) {
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write("{\"error\":\"Invalid or expired token\"}");
             return null;
         }
 
-        Staff staff = staffService.getStaffUser(username);
+        Staff staff = principals.get(username, () -> staffService.getStaffUser(username));
         if (staff == null) {
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             resp.getWriter().write("{\"error\":\"User not found\"}");
@@ -38,6 +48,27 @@ public class AuthUtil {
         return staff; 
     }
 
+    // Subject of a valid token, or null for a bad signature, a malformed token or an expired one
+    private static String usernameOf(String token) {
+        try {
+            return JwtValidator.getUsername(token);
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+
+    // Drops every cached principal; staff changes are rare, and a username change leaves no key to find
+    public static void invalidatePrincipals() {
+        principals.invalidateAll();
+    }
+
+    public static Map<String, Object> getCacheMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tokens", JwtValidator.getCacheMetrics());
+        metrics.put("principals", principals.getMetrics());
+        return metrics;
+    }
+
     // Authorize single role
     public static boolean authorizeRole(Staff staff, String requiredRole, HttpServletResponse resp) throws Exception {
         return authorizeRoles(staff, new String[]{requiredRole}, resp);
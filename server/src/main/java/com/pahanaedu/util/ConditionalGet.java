@@ -0,0 +1,68 @@
+package com.pahanaedu.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.pahanaedu.cache.TableVersions;
+
+/**
+ * Conditional GET for list and lookup endpoints whose answer depends only on a few tables.
+ *
+ * The validators come from TableVersions, so deciding on a 304 costs no query. Responses are marked
+ * "private, no-cache": the browser may keep them but has to revalidate, which is a header-only round trip
+ * while nothing has changed.
+ */
+public class ConditionalGet {
+
+    // Sets ETag and Last-Modified, and answers 304 when the client's copy is current; the caller then returns
+    public static boolean notModified(HttpServletRequest req, HttpServletResponse resp, String... tables) {
+        TableVersions versions = TableVersions.getInstance();
+        StringBuilder tag = new StringBuilder("\"").append(Long.toString(versions.getEpoch(), 36));
+        long lastModified = 0;
+        for (String table : tables) {
+            tag.append('-').append(versions.version(table));
+            lastModified = Math.max(lastModified, versions.lastModified(table));
+        }
+        String etag = tag.append('"').toString();
+
+        // HTTP dates have whole-second precision, so a change later in the second the tables last changed would
+        // carry the same date; until that second is over only the ETag can tell the copies apart
+        boolean datable = lastModified / 1000 < System.currentTimeMillis() / 1000;
+
+        resp.setHeader("ETag", etag);
+        if (datable) {
+            resp.setDateHeader("Last-Modified", lastModified);
+        }
+        resp.setHeader("Cache-Control", "private, no-cache");
+
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        boolean fresh;
+        if (ifNoneMatch != null) {
+            // If-None-Match wins over If-Modified-Since when both are sent
+            fresh = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince = -1;
+            try {
+                ifModifiedSince = req.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                // unparseable date: ignore it, as if it were absent
+            }
+            fresh = datable && ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+
+        if (fresh) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return fresh;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
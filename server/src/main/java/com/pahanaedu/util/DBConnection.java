@@ -1,57 +1,82 @@
 package com.pahanaedu.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
+
+import com.pahanaedu.util.pool.ConnectionPool;
+import com.pahanaedu.util.pool.PoolConfig;
+
 public class DBConnection {
     private static final Logger logger = Logger.getLogger(DBConnection.class.getName());
 
-    private static final String URL = "jdbc:mysql://localhost:3306/pahanaedu";
+    private static final String URL = "jdbc:mysql://localhost:3306/pahanaedu?useServerPrepStmts=true&rewriteBatchedStatements=true";
     private static final String USER = "root";
     private static final String PASSWORD = "1234";
     private static final String DRIVER_CLASS = "com.mysql.cj.jdbc.Driver";
 
     // Singleton instance of DbConnector
-    private static DBConnection instance;
+    private static volatile DBConnection instance;
 
-    // Single shared Connection object
-    private Connection connection;
+    // Pool every DAO borrows from; each unit of work checks a connection out and closes it to return it
+    private final ConnectionPool pool;
 
     // Private constructor to prevent external instantiation
     private DBConnection() {
         try {
             Class.forName(DRIVER_CLASS);
-            this.connection = DriverManager.getConnection(URL, USER, PASSWORD);
-            logger.info("Database connection established successfully.");
         } catch (ClassNotFoundException e) {
             logger.log(Level.SEVERE, "JDBC Driver not found!", e);
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Database connection failed!", e);
         }
+
+        PoolConfig config = new PoolConfig(URL, USER, PASSWORD);
+        config.setMinIdle(Integer.getInteger("pahanaedu.db.pool.minIdle", config.getMinIdle()));
+        config.setMaxSize(Integer.getInteger("pahanaedu.db.pool.maxSize", config.getMaxSize()));
+        config.setBorrowTimeoutMs(Long.getLong("pahanaedu.db.pool.borrowTimeoutMs", config.getBorrowTimeoutMs()));
+        config.setIdleTimeoutMs(Long.getLong("pahanaedu.db.pool.idleTimeoutMs", config.getIdleTimeoutMs()));
+        config.setMaxLifetimeMs(Long.getLong("pahanaedu.db.pool.maxLifetimeMs", config.getMaxLifetimeMs()));
+
+        this.pool = new ConnectionPool(config);
+        pool.start();
+        logger.info("Database connection pool started (max " + config.getMaxSize() + " connections).");
     }
 
     // Public method to provide access to the singleton instance
-    public static synchronized DBConnection getInstance() {
-        if (instance == null) {
-            instance = new DBConnection();
+    public static DBConnection getInstance() {
+        DBConnection result = instance;
+        if (result == null) {
+            synchronized (DBConnection.class) {
+                result = instance;
+                if (result == null) {
+                    instance = result = new DBConnection();
+                }
+            }
         }
-        return instance;
+        return result;
     }
 
-    // Method to get the shared connection
-    public Connection getConnection() {
-        try {
-            // Check if connection is closed or invalid, then recreate
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                logger.info("Database connection re-established.");
-            }
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Failed to re-establish database connection!", e);
+    // Borrow a connection from the pool; closing it hands it back
+    public Connection getConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    public DataSource getDataSource() {
+        return pool;
+    }
+
+    public Map<String, Object> getPoolMetrics() {
+        return pool.getMetrics();
+    }
+
+    // Close the pool on undeploy, without creating one if nothing ever used the database
+    public static void shutdown() {
+        DBConnection current = instance;
+        if (current != null) {
+            current.pool.close();
         }
-        return connection;
     }
 }
@@ -0,0 +1,110 @@
+package com.pahanaedu.util;
+
+import java.util.Arrays;
+
+/**
+ * Units and revenue summed per id, in primitive arrays with open addressing, so adding up millions of sale lines
+ * allocates nothing per line. Not thread-safe: each worker fills its own and the results are merged.
+ */
+public class IdTotals {
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long id, long units, double revenue);
+    }
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] ids;
+    private long[] units;
+    private double[] revenue;
+    private int size;
+
+    public IdTotals() {
+        this(64);
+    }
+
+    public IdTotals(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        Arrays.fill(ids, EMPTY);
+        units = new long[capacity];
+        revenue = new double[capacity];
+        size = 0;
+    }
+
+    public void add(long id, long unitCount, double amount) {
+        int slot = slotFor(id);
+        if (ids[slot] == EMPTY) {
+            ids[slot] = id;
+            size++;
+        }
+        units[slot] += unitCount;
+        revenue[slot] += amount;
+        // kept at most half full, so probe runs stay short
+        if (size * 2 > ids.length) {
+            grow();
+        }
+    }
+
+    public void addAll(IdTotals other) {
+        other.forEach(this::add);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long units(long id) {
+        int slot = slotFor(id);
+        return ids[slot] == id ? units[slot] : 0;
+    }
+
+    public double revenue(long id) {
+        int slot = slotFor(id);
+        return ids[slot] == id ? revenue[slot] : 0;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != EMPTY) {
+                visitor.visit(ids[i], units[i], revenue[i]);
+            }
+        }
+    }
+
+    // The id's slot, or the empty slot where it would go
+    private int slotFor(long id) {
+        int mask = ids.length - 1;
+        int slot = (int) mix(id) & mask;
+        while (ids[slot] != EMPTY && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        long[] oldUnits = units;
+        double[] oldRevenue = revenue;
+        allocate(oldIds.length * 2);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                int slot = slotFor(oldIds[i]);
+                ids[slot] = oldIds[i];
+                units[slot] = oldUnits[i];
+                revenue[slot] = oldRevenue[i];
+                size++;
+            }
+        }
+    }
+
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -4,27 +4,50 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.pahanaedu.cache.ExpiringCache;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
 
 public class JwtValidator {
     private static final String SECRET_KEY = "pahanaEdu";
     private static final long EXPIRATION_TIME = 1000 * 60 * 60 *24;
 
+    // Algorithm and verifier are immutable and thread-safe, so every request shares one
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256(SECRET_KEY);
+    private static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
+
+    // Tokens that already passed verification, by SHA-256 of the token, each kept until its own exp
+    private static final ExpiringCache<String, DecodedJWT> verifiedTokens =
+            new ExpiringCache<>(EXPIRATION_TIME, Integer.getInteger("pahanaedu.auth.tokenCacheSize", 10_000));
+
     public static String generateToken(String username,String role) {
         return JWT.create()
                 .withSubject(username) 
                 .withClaim("role", role)
                 .withIssuedAt(new Date())
                 .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .sign(Algorithm.HMAC256(SECRET_KEY));
+                .sign(ALGORITHM);
     }
     
 
-    // Validate token
+    // Validate token; a token seen before is not verified again until it expires
     public static DecodedJWT validateToken(String token) {
-        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(SECRET_KEY)).build();
-        return verifier.verify(token);
+        String key = digest(token);
+        DecodedJWT jwt = verifiedTokens.get(key);
+        if (jwt != null) {
+            return jwt;
+        }
+
+        jwt = VERIFIER.verify(token);
+        if (jwt.getExpiresAt() != null) {
+            verifiedTokens.put(key, jwt, jwt.getExpiresAt().getTime() - System.currentTimeMillis());
+        }
+        return jwt;
     }
 
     // Extract username
@@ -36,4 +59,17 @@ public class JwtValidator {
     public static String getRole(String token) {
         return validateToken(token).getClaim("role").asString();
     }
-}
\ No newline at end of file
+
+    public static Map<String, Object> getCacheMetrics() {
+        return verifiedTokens.getMetrics();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.pahanaedu.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram with fixed millisecond buckets, cheap enough to record on every request
+public class LatencyHistogram {
+
+    private static final double[] BUCKET_UPPER_MS = {
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_UPPER_MS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        double ms = nanos / 1_000_000.0;
+        int i = 0;
+        while (i < BUCKET_UPPER_MS.length && ms > BUCKET_UPPER_MS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100)
+    public double percentileMs(double percentile) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return i < BUCKET_UPPER_MS.length ? BUCKET_UPPER_MS[i] : maxNanos.get() / 1_000_000.0;
+            }
+        }
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        long total = count.sum();
+        map.put("count", total);
+        map.put("meanMs", total == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / total);
+        map.put("maxMs", maxNanos.get() / 1_000_000.0);
+        map.put("p50Ms", percentileMs(50));
+        map.put("p95Ms", percentileMs(95));
+        map.put("p99Ms", percentileMs(99));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            String label = i < BUCKET_UPPER_MS.length ? "le_" + BUCKET_UPPER_MS[i] + "ms" : "gt_" + BUCKET_UPPER_MS[BUCKET_UPPER_MS.length - 1] + "ms";
+            histogram.put(label, buckets[i].sum());
+        }
+        map.put("buckets", histogram);
+        return map;
+    }
+}
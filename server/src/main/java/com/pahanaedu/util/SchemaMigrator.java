@@ -0,0 +1,287 @@
+package com.pahanaedu.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+/**
+ * Brings the database schema up to date at startup from versioned scripts on the classpath.
+ *
+ * Scripts live in db/migration and are named V{version}__{description}.sql. Each one runs once, in version order,
+ * and is recorded in schema_version with a SHA-256 checksum. Editing a script that has already run is refused,
+ * so every shop's schema is built from the same statements. A named database lock keeps two instances starting
+ * together from running the same script twice.
+ */
+public class SchemaMigrator {
+    private static final Logger logger = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final String LOCATION = "db/migration";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String LOCK_NAME = "pahanaedu_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Duplicate key name: the index was already added by hand, which is the state the script wants anyway
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    private final DataSource dataSource;
+
+    private static final class Script {
+        final int version;
+        final String description;
+        final String name;
+        final String sql;
+        final String checksum;
+
+        Script(int version, String description, String name, String sql) {
+            this.version = version;
+            this.description = description;
+            this.name = name;
+            this.sql = sql;
+            // Line endings are normalised so a Windows checkout does not look like an edited script
+            this.checksum = sha256(sql.replace("\r\n", "\n"));
+        }
+    }
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Applies every pending script and returns how many ran
+    public int migrate() throws Exception {
+        List<Script> scripts = loadScripts();
+        try (Connection conn = dataSource.getConnection()) {
+            if (!acquireLock(conn)) {
+                throw new IllegalStateException("Timed out waiting for another instance to finish migrating the schema");
+            }
+            try {
+                createVersionTable(conn);
+                Map<Integer, String> applied = appliedChecksums(conn);
+
+                int ran = 0;
+                for (Script script : scripts) {
+                    String checksum = applied.get(script.version);
+                    if (checksum != null) {
+                        if (!checksum.equals(script.checksum)) {
+                            throw new IllegalStateException("Migration " + script.name + " was changed after it was applied");
+                        }
+                        continue;
+                    }
+                    apply(conn, script);
+                    ran++;
+                }
+                logger.info("Schema is at version " + (scripts.isEmpty() ? 0 : scripts.get(scripts.size() - 1).version)
+                        + " (" + ran + " migration(s) applied).");
+                return ran;
+            } finally {
+                releaseLock(conn);
+            }
+        }
+    }
+
+    /**
+     * Checks, without changing anything, that every script on the classpath has been applied unedited; for a start
+     * with migrations switched off, where the code still needs the schema they build.
+     */
+    public void verify() throws Exception {
+        List<Script> scripts = loadScripts();
+        Map<Integer, String> applied;
+        try (Connection conn = dataSource.getConnection()) {
+            applied = appliedChecksums(conn);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read schema_version; has the schema ever been migrated?", e);
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (Script script : scripts) {
+            String checksum = applied.get(script.version);
+            if (checksum == null) {
+                missing.add(script.name);
+            } else if (!checksum.equals(script.checksum)) {
+                throw new IllegalStateException("Migration " + script.name + " was changed after it was applied");
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Schema is missing migration(s) " + String.join(", ", missing));
+        }
+        logger.info("Schema is at version " + (scripts.isEmpty() ? 0 : scripts.get(scripts.size() - 1).version)
+                + " (migrations skipped, schema verified).");
+    }
+
+    private void apply(Connection conn, Script script) throws SQLException {
+        long start = System.currentTimeMillis();
+        // MySQL commits DDL implicitly, so a script is not atomic; keep each script to statements that are safe to re-run
+        try (Statement st = conn.createStatement()) {
+            for (String statement : splitStatements(script.sql)) {
+                try {
+                    st.execute(statement);
+                } catch (SQLException e) {
+                    if (e.getErrorCode() != ER_DUP_KEYNAME) {
+                        throw new SQLException("Migration " + script.name + " failed at: " + statement, e);
+                    }
+                    logger.info("Migration " + script.name + ": index already present, skipping");
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, script, checksum, execution_ms) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, script.version);
+            ps.setString(2, script.description);
+            ps.setString(3, script.name);
+            ps.setString(4, script.checksum);
+            ps.setLong(5, System.currentTimeMillis() - start);
+            ps.executeUpdate();
+        }
+        logger.info("Applied migration " + script.name + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void createVersionTable(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT NOT NULL PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "script VARCHAR(255) NOT NULL, "
+                    + "checksum CHAR(64) NOT NULL, "
+                    + "execution_ms BIGINT NOT NULL, "
+                    + "installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private Map<Integer, String> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    private boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    // Scripts found on the classpath, ordered by version
+    private List<Script> loadScripts() throws IOException, URISyntaxException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        URL location = loader.getResource(LOCATION);
+        if (location == null) {
+            logger.warning("No migration scripts found at classpath:" + LOCATION);
+            return new ArrayList<>();
+        }
+
+        TreeMap<Integer, Script> scripts = new TreeMap<>();
+        for (String name : listScriptNames(location)) {
+            Matcher m = SCRIPT_NAME.matcher(name);
+            if (!m.matches()) {
+                continue;
+            }
+            int version = Integer.parseInt(m.group(1));
+            String sql;
+            try (InputStream in = loader.getResourceAsStream(LOCATION + "/" + name)) {
+                sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Script previous = scripts.put(version, new Script(version, m.group(2).replace('_', ' '), name, sql));
+            if (previous != null) {
+                throw new IllegalStateException("Two migrations share version " + version + ": " + previous.name + ", " + name);
+            }
+        }
+        return new ArrayList<>(scripts.values());
+    }
+
+    // File names directly under the migration folder, whether deployed exploded or packed in a jar
+    private List<String> listScriptNames(URL location) throws IOException, URISyntaxException {
+        List<String> names = new ArrayList<>();
+        if ("jar".equals(location.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) location.openConnection();
+            connection.setUseCaches(false);
+            String prefix = connection.getEntryName() + "/";
+            try (JarFile jar = connection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String entry = entries.nextElement().getName();
+                    if (entry.startsWith(prefix) && entry.indexOf('/', prefix.length()) < 0) {
+                        names.add(entry.substring(prefix.length()));
+                    }
+                }
+            }
+        } else {
+            try (Stream<Path> files = Files.list(Paths.get(location.toURI()))) {
+                files.forEach(f -> names.add(f.getFileName().toString()));
+            }
+        }
+        return names;
+    }
+
+    // Statements end with ';' at the end of a line; whole-line "--" comments are dropped
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String statement = current.toString().trim();
+                statements.add(statement.substring(0, statement.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
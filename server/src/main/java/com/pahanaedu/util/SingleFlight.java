@@ -0,0 +1,67 @@
+package com.pahanaedu.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical work that is already in flight: the first caller for a key runs it on its own thread, and
+ * callers arriving before it finishes wait for that result instead of running it again. Nothing is kept once the
+ * work completes; pair it with a cache for that.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Callable<V> work) throws Exception {
+        calls.increment();
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            V value = work.call();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // The leader's result, or its exception as the leader saw it
+    private V await(CompletableFuture<V> running) throws Exception {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long total = calls.sum();
+        long shared = coalesced.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("calls", total);
+        metrics.put("executions", total - shared);
+        metrics.put("coalesced", shared);
+        metrics.put("coalescingRatio", total == 0 ? 0.0 : (double) shared / total);
+        metrics.put("inFlight", inFlight.size());
+        return metrics;
+    }
+}
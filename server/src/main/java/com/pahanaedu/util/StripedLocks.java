@@ -0,0 +1,47 @@
+package com.pahanaedu.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by many keys.
+ * Keys that hash to the same stripe share a lock, so memory stays constant however many keys there are.
+ */
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock lockFor(long key) {
+        return locks[indexFor(key)];
+    }
+
+    // The locks covering all keys, each once, in stripe order. Acquiring them in this order cannot deadlock.
+    public List<ReentrantLock> locksFor(Collection<Long> keys) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long key : keys) {
+            indexes.add(indexFor(key));
+        }
+        List<ReentrantLock> ordered = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            ordered.add(locks[index]);
+        }
+        return ordered;
+    }
+
+    private int indexFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -1,7 +1,10 @@
 package com.pahanaedu.util;
 
 import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
  
@@ -11,6 +14,9 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 public class Util {
 
+    // Most ids one ?ids= batch request may ask for
+    public static final int MAX_BATCH_IDS = 100;
+
     private static final ObjectMapper objectMapper = createObjectMapper();
 
     private static ObjectMapper createObjectMapper() {
@@ -74,4 +80,26 @@ public class Util {
         return false;
     }
 
+    // Parses ?ids=1,2,3 into distinct ids in the order given; IllegalArgumentException when malformed or too many
+    public static List<Long> parseIds(String csv) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String part : csv.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                ids.add(Long.parseLong(part.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid id in ids parameter");
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("ids parameter is empty");
+        }
+        if (ids.size() > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_IDS + " ids per request");
+        }
+        return new ArrayList<>(ids);
+    }
+
 }
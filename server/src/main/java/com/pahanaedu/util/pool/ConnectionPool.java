@@ -0,0 +1,277 @@
+package com.pahanaedu.util.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.pahanaedu.util.LatencyHistogram;
+
+/**
+ * Bounded JDBC connection pool.
+ * At most maxSize connections are lent out at once; callers beyond that wait up to the borrow timeout.
+ * Idle connections are evicted and topped up to minIdle by a housekeeper that start() schedules.
+ */
+public final class ConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final PoolConfig config;
+
+    // Most recently returned connections sit at the head, so the idle tail is what ages out
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Starts the housekeeper, which fills the pool to minIdle straight away; kept out of the constructor so that
+    // no other thread sees the pool before it is fully built
+    public void start() {
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0,
+            config.getHousekeepingIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(config.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (!acquired) {
+            borrowTimeouts.increment();
+            throw new SQLTransientConnectionException("Timed out after " + config.getBorrowTimeoutMs()
+                + " ms waiting for a database connection (active=" + active.get() + ", max=" + config.getMaxSize() + ")");
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            active.incrementAndGet();
+            borrowLatency.record(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool connections use the configured credentials");
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now, config.getMaxLifetimeMs())) {
+                destroy(pooled);
+                continue;
+            }
+            if (pooled.getIdleMillis(now) > config.getValidationIdleMs() && !isValid(pooled)) {
+                validationFailures.increment();
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return create();
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.getPhysical().isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        total.incrementAndGet();
+        created.increment();
+        return new PooledConnection(this, physical, config.getStatementCacheSize());
+    }
+
+    private void destroy(PooledConnection pooled) {
+        total.decrementAndGet();
+        destroyed.increment();
+        pooled.closePhysical();
+    }
+
+    void recordStatementCacheHit() {
+        statementCacheHits.increment();
+    }
+
+    void recordStatementCacheMiss() {
+        statementCacheMisses.increment();
+    }
+
+    // Called by the borrower's proxy on close()
+    void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.isBroken() || pooled.isExpired(System.currentTimeMillis(), config.getMaxLifetimeMs())) {
+                destroy(pooled);
+                return;
+            }
+            pooled.reset();
+            pooled.markReturned();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Discarding connection that could not be reset", e);
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Evict idle and aged connections, then top the pool back up to minIdle
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            List<PooledConnection> snapshot = new ArrayList<>(idle);
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                PooledConnection pooled = snapshot.get(i);
+                boolean expired = pooled.isExpired(now, config.getMaxLifetimeMs());
+                boolean idleTooLong = pooled.getIdleMillis(now) > config.getIdleTimeoutMs()
+                    && total.get() > config.getMinIdle();
+                if ((expired || idleTooLong) && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            // each new connection is made under a permit, as a borrower's would be, so the two never overshoot
+            // maxSize between them; with every permit taken the pool is busy and needs no top-up
+            while (!closed && idle.size() < config.getMinIdle() && total.get() < config.getMaxSize()
+                    && permits.tryAcquire()) {
+                try {
+                    PooledConnection pooled = create();
+                    pooled.markReturned();
+                    idle.offerLast(pooled);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Connection pool could not reach minimum idle size", e);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("total", total.get());
+        metrics.put("active", active.get());
+        metrics.put("idle", idle.size());
+        metrics.put("waiting", waiting.get());
+        metrics.put("minIdle", config.getMinIdle());
+        metrics.put("maxSize", config.getMaxSize());
+        metrics.put("created", created.sum());
+        metrics.put("destroyed", destroyed.sum());
+        metrics.put("borrowTimeouts", borrowTimeouts.sum());
+        metrics.put("validationFailures", validationFailures.sum());
+        metrics.put("statementCacheHits", statementCacheHits.sum());
+        metrics.put("statementCacheMisses", statementCacheMisses.sum());
+        metrics.put("borrowLatency", borrowLatency.toMap());
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        // Connections still lent out are destroyed as they come back
+        logger.info("Connection pool closed.");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return logger;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
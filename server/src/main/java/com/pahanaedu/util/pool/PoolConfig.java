@@ -0,0 +1,114 @@
+package com.pahanaedu.util.pool;
+
+public class PoolConfig {
+    private String url;
+    private String user;
+    private String password;
+
+    private int minIdle = 2;
+    private int maxSize = 20;
+
+    // How long a caller may wait for a free connection before failing
+    private long borrowTimeoutMs = 5_000;
+
+    // Connections idle longer than this are pinged before being handed out
+    private long validationIdleMs = 500;
+    private int validationTimeoutSeconds = 2;
+
+    private long idleTimeoutMs = 10 * 60_000;
+    private long maxLifetimeMs = 30 * 60_000;
+    private long housekeepingIntervalMs = 30_000;
+
+    // Prepared statements kept open per connection, keyed by SQL text (0 disables caching)
+    private int statementCacheSize = 64;
+
+    public PoolConfig(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getBorrowTimeoutMs() {
+        return borrowTimeoutMs;
+    }
+
+    public void setBorrowTimeoutMs(long borrowTimeoutMs) {
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    public long getValidationIdleMs() {
+        return validationIdleMs;
+    }
+
+    public void setValidationIdleMs(long validationIdleMs) {
+        this.validationIdleMs = validationIdleMs;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getMaxLifetimeMs() {
+        return maxLifetimeMs;
+    }
+
+    public void setMaxLifetimeMs(long maxLifetimeMs) {
+        this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    public long getHousekeepingIntervalMs() {
+        return housekeepingIntervalMs;
+    }
+
+    public void setHousekeepingIntervalMs(long housekeepingIntervalMs) {
+        this.housekeepingIntervalMs = housekeepingIntervalMs;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,291 @@
+package com.pahanaedu.util.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// A physical connection owned by the pool. Callers only ever see a per-borrow proxy whose close() hands it back.
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final int statementCacheSize;
+    private final long createdAt;
+    private volatile long lastReturnedAt;
+    private volatile boolean broken;
+
+    // Session state changed by the current borrower that must be undone before reuse
+    private boolean autoCommitChanged;
+    private boolean readOnlyChanged;
+
+    // Prepared statements keyed by SQL text in access order, so the eldest entry is the least recently used.
+    // Only the borrowing thread touches this, so it needs no locking.
+    private final LinkedHashMap<String, CachedStatement> statementCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCacheSize = statementCacheSize;
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new Lease()
+        );
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean isExpired(long now, long maxLifetimeMs) {
+        return maxLifetimeMs > 0 && now - createdAt >= maxLifetimeMs;
+    }
+
+    long getIdleMillis(long now) {
+        return now - lastReturnedAt;
+    }
+
+    void markReturned() {
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    // Put the session back the way the pool handed it out
+    void reset() throws SQLException {
+        if (autoCommitChanged) {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            autoCommitChanged = false;
+        }
+        if (readOnlyChanged) {
+            physical.setReadOnly(false);
+            readOnlyChanged = false;
+        }
+        physical.clearWarnings();
+    }
+
+    void closePhysical() {
+        try {
+            physical.close();
+        } catch (SQLException ignored) {
+            // the socket is going away either way
+        }
+    }
+
+    private PreparedStatement prepareCached(String sql) throws SQLException {
+        CachedStatement cached = statementCache.get(sql);
+        if (cached != null && !cached.inUse) {
+            pool.recordStatementCacheHit();
+            return cached.checkOut();
+        }
+
+        pool.recordStatementCacheMiss();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (cached != null) {
+            // The same SQL is already open on this connection (e.g. a nested query), so this copy is not cached
+            return statement;
+        }
+
+        cached = new CachedStatement(statement);
+        statementCache.put(sql, cached);
+        evictStatements();
+        return cached.checkOut();
+    }
+
+    private void evictStatements() {
+        Iterator<CachedStatement> it = statementCache.values().iterator();
+        while (statementCache.size() > statementCacheSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            if (!eldest.inUse) {
+                it.remove();
+                eldest.closePhysical();
+            }
+        }
+    }
+
+    private static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLNonTransientConnectionException || (state != null && state.startsWith("08"));
+    }
+
+    private class Lease implements InvocationHandler {
+        private boolean closed;
+        private final List<Statement> statements = new ArrayList<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    closeStatements();
+                    pool.release(PooledConnection.this);
+                }
+                return null;
+            case "isClosed":
+                return closed || physical.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Pooled[" + physical + "]";
+            default:
+                break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if ("setAutoCommit".equals(method.getName())) {
+                autoCommitChanged = true;
+            } else if ("setReadOnly".equals(method.getName())) {
+                readOnlyChanged = true;
+            }
+
+            try {
+                if (statementCacheSize > 0 && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                    PreparedStatement statement = prepareCached((String) args[0]);
+                    track(statement);
+                    return statement;
+                }
+
+                Object result = method.invoke(physical, args);
+                if (result instanceof Statement) {
+                    track((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            } catch (SQLException e) {
+                if (isFatal(e)) {
+                    broken = true;
+                }
+                throw e;
+            }
+        }
+
+        private void track(Statement statement) throws SQLException {
+            if (statements.size() >= 32) {
+                statements.removeIf(s -> {
+                    try {
+                        return s.isClosed();
+                    } catch (SQLException e) {
+                        return true;
+                    }
+                });
+            }
+            statements.add(statement);
+        }
+
+        // Borrowers that forget to close statements must not leak server-side cursors
+        private void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // best effort
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    // A cached statement is lent out as a proxy whose close() clears its parameters and batch and puts it back
+    private class CachedStatement {
+        private final PreparedStatement physicalStatement;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement physicalStatement) {
+            this.physicalStatement = physicalStatement;
+        }
+
+        PreparedStatement checkOut() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new Handle()
+            );
+        }
+
+        void closePhysical() {
+            try {
+                physicalStatement.close();
+            } catch (SQLException ignored) {
+                // best effort
+            }
+        }
+
+        private class Handle implements InvocationHandler {
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        // back into the cache with nothing left of this use, queued batch included
+                        try {
+                            physicalStatement.clearBatch();
+                            physicalStatement.clearParameters();
+                        } catch (SQLException e) {
+                            // a statement that cannot be cleared cannot be reused; retire the connection with it
+                            broken = true;
+                        } finally {
+                            inUse = false;
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physicalStatement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+                }
+
+                if (closed) {
+                    throw new SQLException("Statement is closed");
+                }
+                try {
+                    return method.invoke(physicalStatement, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                        broken = true;
+                    }
+                    throw cause;
+                }
+            }
+        }
+    }
+}
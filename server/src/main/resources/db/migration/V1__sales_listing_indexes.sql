@@ -0,0 +1,4 @@
+-- Sales are always listed newest first, overall and per customer (SaleDaoImpl pages, /latest, analytics by date).
+-- InnoDB appends the primary key to secondary indexes, so sale_id already acts as the final tie-breaker.
+CREATE INDEX idx_sales_date_time ON sales (sale_date, sale_time);
+CREATE INDEX idx_sales_customer_date_time ON sales (customer_id, sale_date, sale_time);
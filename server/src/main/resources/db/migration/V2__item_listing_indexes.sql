@@ -0,0 +1,3 @@
+-- Item pages are ordered by last_updated_at; the low stock report and reorder checks filter on stock_available.
+CREATE INDEX idx_item_last_updated ON item (last_updated_at);
+CREATE INDEX idx_item_stock_available ON item (stock_available);
@@ -0,0 +1,3 @@
+-- Customer pages are ordered by lastUpdated, and the active list filters on isActive first.
+CREATE INDEX idx_customers_last_updated ON customers (lastUpdated);
+CREATE INDEX idx_customers_active_updated ON customers (isActive, lastUpdated);
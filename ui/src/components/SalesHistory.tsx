@@ -27,16 +27,18 @@ import {
   TableHeader,
   TableRow,
 } from '@/components/ui/table';
-import { getSaleByIdorTele, getSales, updateSalePayment } from '@/services/saleService';
+import { getSaleById, getSaleByIdorTele, getSales, updateSalePayment } from '@/services/saleService';
 import { PaginatedResponse } from '@/types/PaginatedResponse';
 import { Sale } from '@/types/Sale';
+import { SaleSummary } from '@/types/SaleSummary';
 import { formatCurrency, handlePrint, renderPageNumbers } from '@/lib/utils';
 import { Label } from './ui/label';
 
 const SalesHistory = () => {
-  const [sales, setSales] = useState<Sale[]>([]);
+  const [sales, setSales] = useState<SaleSummary[]>([]);
   const [searchTerm, setSearchTerm] = useState('');
-  const [selectedSale, setSelectedSale] = useState<Sale | null>(null);
+  const [selectedSale, setSelectedSale] = useState<SaleSummary | null>(null);
+  const [saleDetails, setSaleDetails] = useState<Sale | null>(null);
   const [isViewDialogOpen, setIsViewDialogOpen] = useState(false);
   const [isUpdatePaymentDialogOpen, setIsUpdatePaymentDialogOpen] = useState(false);
   const [editPaidAmount, setEditPaidAmount] = useState(0);
@@ -51,7 +53,7 @@ const SalesHistory = () => {
   const loadSales = async (page: number = 1, search?: string) => {
     setLoading(true);
     try {
-      let response: PaginatedResponse<Sale>;
+      let response: PaginatedResponse<SaleSummary>;
       if (search) {
         response = await getSaleByIdorTele(search, page);
       } else {
@@ -109,11 +111,20 @@ const SalesHistory = () => {
     setEditBalance(selectedSale.totalAmount - paidvalue)
   }
 
-  const openViewDialog = (sale: Sale) => {
-    setSelectedSale(sale);
-    setIsViewDialogOpen(true);
+  // The list only carries summaries, so the lines are fetched when a sale is opened
+  const openViewDialog = async (sale: SaleSummary) => {
+    try {
+      setSaleDetails(await getSaleById(sale.saleId));
+      setIsViewDialogOpen(true);
+    } catch (error) {
+      toast({
+        title: "Error",
+        description: "Failed to load sale details",
+        variant: "destructive"
+      });
+    }
   };
-  const openUpdatePaymentDialog = (sale: Sale) => {
+  const openUpdatePaymentDialog = (sale: SaleSummary) => {
     setSelectedSale(sale);
     setEditBalance(sale.balance)
     setEditPaidAmount(sale.paid)
@@ -121,7 +132,7 @@ const SalesHistory = () => {
     loadSales(currentPage)
   };
 
-  const getPaymentStatus = (sale: Sale) => {
+  const getPaymentStatus = (sale: SaleSummary) => {
     if (sale.paid >= sale.totalAmount) {
       return { status: "Paid", variant: "default" as const };
     } else if (sale.paid > 0 && sale.paid < sale.totalAmount) {
@@ -207,10 +218,10 @@ const SalesHistory = () => {
                         </div>
                       </div>
 
-                      {sale.saleItems.length > 0 && (
+                      {sale.lineCount > 0 && (
                         <div className="mt-4 pt-4 border-t">
                           <p className="text-sm text-muted-foreground">
-                            Items: {sale.saleItems.map(item => `${item.item.name} (${item.qty})`).join(', ')}
+                            Items: {sale.lineCount} {sale.lineCount === 1 ? 'line' : 'lines'}
                           </p>
                         </div>
                       )}
@@ -322,25 +333,25 @@ const SalesHistory = () => {
           <DialogHeader>
             <DialogTitle>Sale Details</DialogTitle>
           </DialogHeader>
-          {selectedSale && (
+          {saleDetails && (
             <div className="space-y-6">
               {/* Sale Info */}
               <div className="grid grid-cols-2 md:grid-cols-4 gap-4">
                 <div>
                   <p className="text-sm font-medium text-muted-foreground">Sale ID</p>
-                  <p className="text-base">#{selectedSale.saleId.toString().padStart(4, '0')}</p>
+                  <p className="text-base">#{saleDetails.saleId.toString().padStart(4, '0')}</p>
                 </div>
                 <div>
                   <p className="text-sm font-medium text-muted-foreground">Customer</p>
-                  <p className="text-base">{selectedSale.customerName}</p>
+                  <p className="text-base">{saleDetails.customerName}</p>
                 </div>
                 <div>
                   <p className="text-sm font-medium text-muted-foreground">Date</p>
-                  <p className="text-base">{new Date(selectedSale.saleDate).toLocaleDateString()}</p>
+                  <p className="text-base">{new Date(saleDetails.saleDate).toLocaleDateString()}</p>
                 </div>
                 <div>
                   <p className="text-sm font-medium text-muted-foreground">Time</p>
-                  <p className="text-base">{selectedSale.saleTime}</p>
+                  <p className="text-base">{saleDetails.saleTime}</p>
                 </div>
               </div>
 
@@ -358,7 +369,7 @@ const SalesHistory = () => {
                     </TableRow>
                   </TableHeader>
                   <TableBody>
-                    {selectedSale.saleItems.map((item) => (
+                    {saleDetails.saleItems.map((item) => (
                       <TableRow key={item.saleItemId}>
                         <TableCell className="font-medium">{item.item.name}</TableCell>
                         <TableCell>{formatCurrency(item.item.unitPrice)}</TableCell>
@@ -376,25 +387,25 @@ const SalesHistory = () => {
                 <div className="grid grid-cols-2 md:grid-cols-4 gap-4">
                   <div>
                     <p className="text-sm font-medium text-muted-foreground">Subtotal</p>
-                    <p className="text-base font-semibold">{formatCurrency(selectedSale.subTotal)}</p>
+                    <p className="text-base font-semibold">{formatCurrency(saleDetails.subTotal)}</p>
                   </div>
                   <div>
                     <p className="text-sm font-medium text-muted-foreground">Total Discount</p>
-                    <p className="text-base font-semibold text-warning">{formatCurrency(selectedSale.totalDiscount)}</p>
+                    <p className="text-base font-semibold text-warning">{formatCurrency(saleDetails.totalDiscount)}</p>
                   </div>
                   <div>
                     <p className="text-sm font-medium text-muted-foreground">Amount Paid</p>
-                    <p className="text-base font-semibold text-success">{formatCurrency(selectedSale.paid)}</p>
+                    <p className="text-base font-semibold text-success">{formatCurrency(saleDetails.paid)}</p>
                   </div>
                   <div>
                     <p className="text-sm font-medium text-muted-foreground">Balance</p>
-                    <p className="text-base font-semibold text-destructive">{formatCurrency(selectedSale.balance)}</p>
+                    <p className="text-base font-semibold text-destructive">{formatCurrency(saleDetails.balance)}</p>
                   </div>
                 </div>
                 <div className="mt-4 pt-4 border-t">
                   <div className="flex justify-between items-center">
                     <p className="text-lg font-semibold">Total Amount</p>
-                    <p className="text-2xl font-bold text-primary">{formatCurrency(selectedSale.totalAmount)}</p>
+                    <p className="text-2xl font-bold text-primary">{formatCurrency(saleDetails.totalAmount)}</p>
                   </div>
                 </div>
               </div>
@@ -403,13 +414,13 @@ const SalesHistory = () => {
               <div className="flex justify-end">
                 <Button variant="outline"
                   onClick={() => handlePrint(
-                    selectedSale.customerId,
-                    selectedSale.saleItems,
-                    selectedSale.subTotal,
-                    selectedSale.totalDiscount,
-                    selectedSale.totalAmount,
-                    selectedSale.paid,
-                    selectedSale.balance,
+                    saleDetails.customerId,
+                    saleDetails.saleItems,
+                    saleDetails.subTotal,
+                    saleDetails.totalDiscount,
+                    saleDetails.totalAmount,
+                    saleDetails.paid,
+                    saleDetails.balance,
                     toast
                   )}
                   className="mb-4 mr-4"
@@ -22,7 +22,7 @@ import { View } from "@/types/View";
 import { SalesHistory } from "@/components/SalesHistory";
 import { StaffManagement } from "@/components/StaffManagement";
 import { CategoryManagement } from "@/components/CategoryManagement";
-import { Sale } from "@/types/Sale";
+import { SaleSummary } from "@/types/SaleSummary";
 import { useToast } from "@/hooks/use-toast";
 import { getRecentSales } from "@/services/saleService";
 import { useAuth } from "@/context/AuthContext";
@@ -34,7 +34,7 @@ import { getDashboardAnalytics } from "@/services/analyticsService";
 
 const Dashboard = () => {
   const [currentView, setCurrentView] = useState<View>('dashboard');
-  const [recentSales, setRecentSales] = useState<Sale[]>([])
+  const [recentSales, setRecentSales] = useState<SaleSummary[]>([])
   const {toast} = useToast();
   const { isManager } = useAuth();
   const [stats, setStats] = useState<DashboardStat[]>([])
@@ -2,6 +2,7 @@
 import api from './api';
 import { PaginatedResponse } from '../types/PaginatedResponse';
 import { Sale } from '../types/Sale';
+import { SaleSummary } from '../types/SaleSummary';
 import { Customer } from '../types/Customer';
 import { SaleItem } from '../types/SaleItem';
 
@@ -12,9 +13,9 @@ export interface SaleRequestDTO {
   balance: number;
 }
 
-//   Get all sales (paginated)
-export const getSales = async (page: number = 1): Promise<PaginatedResponse<Sale>> => {
-  const response = await api.get<PaginatedResponse<Sale>>('/api/sales', {
+//   Get all sales (paginated, summaries only; use getSaleById for the lines)
+export const getSales = async (page: number = 1): Promise<PaginatedResponse<SaleSummary>> => {
+  const response = await api.get<PaginatedResponse<SaleSummary>>('/api/sales', {
     params: { page },
   });
   return response.data;
@@ -26,23 +27,23 @@ export const getSaleById = async (id: number): Promise<Sale> => {
   return response.data;
 };
 //   Get sale by ID or Telephone number
-export const getSaleByIdorTele = async (q: string,page:number = 1): Promise<PaginatedResponse<Sale>> => {
-  const response = await api.get<PaginatedResponse<Sale>>('/api/sales/search',{
+export const getSaleByIdorTele = async (q: string,page:number = 1): Promise<PaginatedResponse<SaleSummary>> => {
+  const response = await api.get<PaginatedResponse<SaleSummary>>('/api/sales/search',{
     params: { q ,page},
   });
   return response.data;
 };
 
 //   Search sales by customer telephone
-export const searchSalesByCustomer = async (customerTele: string, page: number = 1): Promise<Sale[]> => {
-  const response = await api.get<Sale[]>('/api/sales/tele', {
+export const searchSalesByCustomer = async (customerTele: string, page: number = 1): Promise<PaginatedResponse<SaleSummary>> => {
+  const response = await api.get<PaginatedResponse<SaleSummary>>('/api/sales/tele', {
     params: { customerTele, page },
   });
   return response.data;
 };
 
-export const getRecentSales = async (): Promise<Sale[]> => {
-  const response = await api.get<Sale[]>('/api/sales/latest');
+export const getRecentSales = async (): Promise<SaleSummary[]> => {
+  const response = await api.get<SaleSummary[]>('/api/sales/latest');
   return response.data;
 };
 
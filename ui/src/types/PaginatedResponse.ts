@@ -2,4 +2,6 @@ export interface PaginatedResponse<T> {
   data: T[];
   totalPages: number;
   totalCount: number;
-}
\ No newline at end of file
+  nextCursor?: string | null;
+  totalExact?: boolean;
+}
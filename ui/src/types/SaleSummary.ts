@@ -0,0 +1,14 @@
+// Header-only sale returned by the sales lists; fetch the sale by id for its lines
+export interface SaleSummary {
+  saleId: number;
+  customerId: number;
+  customerName: string;
+  totalAmount: number;
+  totalDiscount: number;
+  subTotal: number;
+  paid: number;
+  balance: number;
+  saleDate: string;
+  saleTime: string;
+  lineCount: number;
+}